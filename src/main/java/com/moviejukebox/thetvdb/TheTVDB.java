@@ -12,6 +12,7 @@
  */
 package com.moviejukebox.thetvdb;
 
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.text.ParseException;
@@ -20,15 +21,24 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.moviejukebox.thetvdb.cache.CacheType;
+import com.moviejukebox.thetvdb.cache.TvdbCache;
 import com.moviejukebox.thetvdb.model.Actor;
 import com.moviejukebox.thetvdb.model.Banners;
 import com.moviejukebox.thetvdb.model.Episode;
 import com.moviejukebox.thetvdb.model.Mirrors;
 import com.moviejukebox.thetvdb.model.Series;
+import com.moviejukebox.thetvdb.model.SeriesBundle;
+import com.moviejukebox.thetvdb.model.Updates;
 import com.moviejukebox.thetvdb.tools.LogFormatter;
 import com.moviejukebox.thetvdb.tools.TvdbParser;
 import com.moviejukebox.thetvdb.tools.WebBrowser;
@@ -39,8 +49,14 @@ import com.moviejukebox.thetvdb.tools.WebBrowser;
  */
 public class TheTVDB {
     private static String apiKey = null;
-    private static String xmlMirror = null;
-    private static String bannerMirror = null;
+    // Read without a lock, the lock is only taken to load the mirrors or check whether they need a refresh
+    private static volatile Mirrors mirrors = null;
+    private static volatile long mirrorsRefreshDue = 0;
+    private static long mirrorsRefreshStarted = 0;
+    private static volatile Thread mirrorsRefresh = null;
+    private static TvdbCache cache = null;
+    // The fetches that are running, so a thread that needs the same URL waits for that result instead
+    private static ConcurrentHashMap<String, Future<?>> fetches = new ConcurrentHashMap<String, Future<?>>();
     
     private static final String LOGGERNAME = "TheTVDB";
     private static Logger logger = null;
@@ -50,7 +66,15 @@ public class TheTVDB {
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
     
     private static final String XML_EXTENSION = ".xml";
+    private static final String ZIP_EXTENSION = ".zip";
     private static final String SERIES_URL = "/series/";
+    private static final String API_PATH = "/api/";
+    private static final String BANNER_PATH = "/banners/";
+    private static final String MIRRORS_KEY = "mirrors.xml";
+    // The longest time to wait for the mirrors to be refreshed before they are saved
+    private static final long MIRRORS_REFRESH_WAIT = 5000L;
+    
+    private static final long SECONDS_PER_DAY = 24L * 60L * 60L;
     private static final String ALL_URL = "/all/";
     
     public TheTVDB(String apiKey) {
@@ -103,34 +127,100 @@ public class TheTVDB {
     }
 
     /**
-     * Get the mirror information from TheTVDb
-     * @return True if everything is OK, false otherwise.
+     * Get the mirror information from TheTVDb.
+     * The mirrors are only read once, after that the health of each mirror decides which one is used.
+     * The mirrors saved in the cache by an earlier run are used right away, when they are older than
+     * the time to live they are read again in the background.
+     * @return The mirrors
      */
-    private static void getMirrors() {
-        // If we don't need to get the mirrors, then just return
-        if (xmlMirror != null && bannerMirror != null) {
-            return;
+    private static Mirrors getMirrors() {
+        // If we don't need to get or refresh the mirrors, then just return them
+        Mirrors currentMirrors = mirrors;
+        if (currentMirrors != null && System.currentTimeMillis() < mirrorsRefreshDue) {
+            return currentMirrors;
         }
-        
-        Mirrors mirrors = new Mirrors(apiKey);
-        xmlMirror = mirrors.getMirror(Mirrors.TYPE_XML);
-        bannerMirror = mirrors.getMirror(Mirrors.TYPE_BANNER);
-        
-        if (xmlMirror == null) {
-            throw new RuntimeException("There is a problem getting the xmlMirror data from TheTVDB, this means it is likely to be down.");
-        } else {
-            xmlMirror += "/api/";
+        return loadMirrors();
+    }
+    
+    private static synchronized Mirrors loadMirrors() {
+        if (mirrors != null) {
+            refreshMirrors();
+            return mirrors;
         }
         
-        if (bannerMirror == null) {
-            throw new RuntimeException("There is a problem getting the bannerMirror data from TheTVDB, this means it is likely to be down.");
-        } else {
-            bannerMirror += "/banners/";
+        Mirrors newMirrors = (cache == null) ? null : (Mirrors) cache.get(CacheType.MIRRORS, MIRRORS_KEY);
+        if (newMirrors == null || !isComplete(newMirrors)) {
+            newMirrors = new Mirrors(apiKey);
+            if (newMirrors.getMirror(Mirrors.TYPE_XML) == null) {
+                throw new RuntimeException("There is a problem getting the xmlMirror data from TheTVDB, this means it is likely to be down.");
+            }
+            
+            if (newMirrors.getMirror(Mirrors.TYPE_BANNER) == null) {
+                throw new RuntimeException("There is a problem getting the bannerMirror data from TheTVDB, this means it is likely to be down.");
+            }
+            
+            if (cache != null) {
+                cache.put(CacheType.MIRRORS, MIRRORS_KEY, newMirrors);
+            }
         }
         
-        //zipMirror = mirrors.getMirror(Mirrors.TYPE_ZIP);
+        mirrors = newMirrors;
+        WebBrowser.setMirrors(newMirrors);
+        refreshMirrors();
+        return newMirrors;
+    }
+    
+    private static boolean isComplete(Mirrors checkMirrors) {
+        return checkMirrors.hasMirror(Mirrors.TYPE_XML) && checkMirrors.hasMirror(Mirrors.TYPE_BANNER);
+    }
+    
+    /**
+     * Read the mirrors again in the background if they are older than the time to live.
+     * The old mirrors are used until then, and if the new ones can't be read.
+     * Nothing is checked again until the next refresh is due.
+     */
+    private static void refreshMirrors() {
+        if (cache == null) {
+            // Checked again when a cache is set
+            mirrorsRefreshDue = Long.MAX_VALUE;
+            return;
+        }
+        long timeToLive = cache.getTimeToLive(CacheType.MIRRORS);
+        long now = System.currentTimeMillis();
+        long age = Math.min(now - mirrors.getRetrieved(), now - mirrorsRefreshStarted);
+        if (age < timeToLive) {
+            long wait = timeToLive - age;
+            mirrorsRefreshDue = (wait > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + wait;
+            return;
+        }
+        mirrorsRefreshStarted = now;
+        mirrorsRefreshDue = now + Math.max(0L, timeToLive);
         
-        return;
+        final Mirrors oldMirrors = mirrors;
+        mirrorsRefresh = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Mirrors newMirrors = new Mirrors(apiKey);
+                    if (isComplete(newMirrors)) {
+                        oldMirrors.update(newMirrors);
+                        logger.fine("Refreshed the mirrors " + oldMirrors);
+                        cacheMirrors();
+                    }
+                } catch (RuntimeException refreshError) {
+                    logger.fine("The mirrors could not be refreshed: " + refreshError);
+                }
+            }
+        }, "TheTVDB mirrors");
+        mirrorsRefresh.setDaemon(true);
+        mirrorsRefresh.start();
+    }
+    
+    private static void cacheMirrors() {
+        Mirrors cachedMirrors = mirrors;
+        TvdbCache mirrorsCache = cache;
+        if (cachedMirrors != null && mirrorsCache != null) {
+            mirrorsCache.put(CacheType.MIRRORS, MIRRORS_KEY, cachedMirrors);
+        }
     }
     
     /**
@@ -157,6 +247,131 @@ public class TheTVDB {
         WebBrowser.setWebTimeoutRead(webTimeoutRead);
     }
     
+    /**
+     * Set the number of idle connections that are kept open to each mirror.
+     * This applies to every HTTP connection of the Java process, and has to be set before the first request is made.
+     * @param maxConnections
+     */
+    public void setMaxConnections(int maxConnections) {
+        WebBrowser.setMaxConnections(maxConnections);
+    }
+    
+    /**
+     * Limit the number of requests per second that are sent to each host of TheTVDB.
+     * When the limit is reached, the lookups of single series and episodes go before the downloads of
+     * all episodes, banners and actors of a series.
+     * @param requestsPerSecond The number of requests per second, 0 or less for no limit
+     * @param burst The number of requests that can be sent at once after a quiet period
+     */
+    public void setRateLimit(double requestsPerSecond, int burst) {
+        WebBrowser.setRateLimit(requestsPerSecond, burst);
+    }
+    
+    /**
+     * Limit the number of requests per second that are sent to a single host, instead of the limit for all hosts
+     * @param host
+     * @param requestsPerSecond The number of requests per second, 0 or less for no limit
+     * @param burst The number of requests that can be sent at once after a quiet period
+     */
+    public void setRateLimit(String host, double requestsPerSecond, int burst) {
+        WebBrowser.setRateLimit(host, requestsPerSecond, burst);
+    }
+    
+    /**
+     * @return the number of requests that have been sent to each host and how long they had to wait for the limit
+     */
+    public String getRequestStatistics() {
+        return WebBrowser.getRequestStatistics();
+    }
+    
+    /**
+     * Set the cache used to store the results between runs, null disables caching
+     * @param cache
+     */
+    public void setCache(TvdbCache cache) {
+        TheTVDB.cache = cache;
+        WebBrowser.setResponseCache(cache);
+        // The time to live of the mirrors comes from the cache
+        mirrorsRefreshDue = 0;
+    }
+
+    public static TvdbCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Save the mirrors with their health in the cache, so the next run can use them without reading them again.
+     * A refresh of the mirrors that is still running is given a moment to finish, otherwise a short run would
+     * never get to save the new mirrors.
+     */
+    public void saveMirrors() {
+        Thread refresh = mirrorsRefresh;
+        if (refresh != null) {
+            try {
+                refresh.join(MIRRORS_REFRESH_WAIT);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        cacheMirrors();
+    }
+
+    /**
+     * Bring the cache up to date with the changes made on TheTVDB since the last sync.
+     * Only the cached results for the series that have changed are removed, the rest can still be used.
+     * TheTVDB keeps updates files for the last day, week and month, so the smallest one that covers the
+     * time since the last sync is used. The whole cache is cleared if the last sync was longer ago than that.
+     * @param lastSync The time returned by the previous sync, or 0 if there hasn't been one
+     * @return The server time to use for the next sync, or lastSync if the updates couldn't be read
+     */
+    public long sync(long lastSync) {
+        if (cache == null) {
+            return lastSync;
+        }
+        
+        long age = (System.currentTimeMillis() / 1000L) - lastSync;
+        String period;
+        if (lastSync > 0 && age <= SECONDS_PER_DAY) {
+            period = "day";
+        } else if (lastSync > 0 && age <= 7L * SECONDS_PER_DAY) {
+            period = "week";
+        } else {
+            // Without an earlier sync, anything that changed in the last month could be in the cache
+            period = "month";
+        }
+        
+        StringBuilder urlString = new StringBuilder();
+        try {
+            urlString.append(getXmlMirror());
+            urlString.append(apiKey);
+            urlString.append("/updates/updates_");
+            urlString.append(period);
+            urlString.append(XML_EXTENSION);
+        } catch (Throwable tw) {
+            logger.severe(tw.getMessage());
+            return lastSync;
+        }
+        
+        Updates updates = TvdbParser.getUpdates(urlString.toString(), lastSync);
+        if (updates.getTime() == 0) {
+            return lastSync;
+        }
+        
+        if (lastSync > 0 && age > 30L * SECONDS_PER_DAY) {
+            logger.fine("The last sync was more than a month ago, clearing the cache");
+            cache.clear();
+        } else {
+            // The results for a series are all cached under keys like series/<id>/en.xml
+            List<String> keyPrefixes = new ArrayList<String>();
+            for (String seriesId : updates.getSeriesIds()) {
+                keyPrefixes.add("series/" + seriesId + "/");
+            }
+            logger.fine("Removing " + keyPrefixes.size() + " updated series from the cache");
+            cache.removeAll(keyPrefixes);
+        }
+        return updates.getTime();
+    }
+
     /**
      * Get the series information
      * @param id
@@ -179,12 +394,23 @@ public class TheTVDB {
             return null;
         }
         
-        List<Series> seriesList = TvdbParser.getSeriesList(urlString.toString());
-        if (seriesList.isEmpty()) {
-            return null;
-        } else {
-            return seriesList.get(0);
+        Series cachedSeries = (Series) getCached(CacheType.SERIES, urlString.toString());
+        if (cachedSeries != null) {
+            return cachedSeries;
         }
+        
+        final String seriesUrl = urlString.toString();
+        return fetchOnce("series", seriesUrl, new Callable<Series>() {
+            public Series call() {
+                List<Series> seriesList = TvdbParser.getSeriesList(seriesUrl);
+                if (seriesList.isEmpty()) {
+                    return null;
+                } else {
+                    putCached(CacheType.SERIES, seriesUrl, seriesList.get(0));
+                    return seriesList.get(0);
+                }
+            }
+        });
     }
     
     /**
@@ -210,7 +436,20 @@ public class TheTVDB {
             return null;
         }
         
-        List<Episode> episodeList = TvdbParser.getAllEpisodes(urlString.toString(), -1);
+        List<Episode> episodeList = getCachedEpisodes(urlString.toString());
+        if (episodeList == null) {
+            final String episodesUrl = urlString.toString();
+            episodeList = fetchOnce("episodes", episodesUrl, new Callable<List<Episode>>() {
+                public List<Episode> call() {
+                    List<Episode> allEpisodes = TvdbParser.getAllEpisodes(episodesUrl, -1);
+                    if (!allEpisodes.isEmpty()) {
+                        putCached(CacheType.EPISODE_LIST, episodesUrl, new ArrayList<Episode>(allEpisodes));
+                    }
+                    return allEpisodes;
+                }
+            });
+        }
+        
         if (episodeList.isEmpty()) {
             return null;
         } else {
@@ -218,6 +457,70 @@ public class TheTVDB {
         }
     }
     
+    /**
+     * Get the series, all its episodes, banners and actors with a single download of the series zip file.
+     * The parts are cached separately, so they are also used by getSeries, getAllEpisodes, getBanners and getActors.
+     * @param id
+     * @param language
+     * @return The bundle, or null if the zip file couldn't be read completely, the XML feeds can be used instead
+     */
+    public SeriesBundle getSeriesBundle(String id, String language) {
+        StringBuilder urlString = new StringBuilder();
+        final String seriesUrl;
+        final String episodesUrl;
+        final String bannersUrl;
+        final String actorsUrl;
+        try {
+            seriesUrl = getXmlMirror() + apiKey + SERIES_URL + id + "/" + language + XML_EXTENSION;
+            episodesUrl = getXmlMirror() + apiKey + SERIES_URL + id + ALL_URL + language + XML_EXTENSION;
+            bannersUrl = getXmlMirror() + apiKey + SERIES_URL + id + "/banners.xml";
+            actorsUrl = getXmlMirror() + apiKey + SERIES_URL + id + "/actors.xml";
+            
+            urlString.append(getZipMirror());
+            urlString.append(apiKey);
+            urlString.append(SERIES_URL);
+            urlString.append(id);
+            urlString.append(ALL_URL);
+            urlString.append(language).append(ZIP_EXTENSION);
+        } catch (Throwable tw) {
+            logger.severe(tw.getMessage());
+            return null;
+        }
+        
+        // Only use the cache when it has all the parts
+        Series series = (Series) getCached(CacheType.SERIES, seriesUrl);
+        List<Episode> episodes = getCachedEpisodes(episodesUrl);
+        Banners banners = (Banners) getCached(CacheType.BANNERS, bannersUrl);
+        @SuppressWarnings("unchecked")
+        List<Actor> actors = (List<Actor>) getCached(CacheType.ACTORS, actorsUrl);
+        if (series != null && episodes != null && banners != null && actors != null) {
+            SeriesBundle bundle = new SeriesBundle();
+            bundle.setSeries(series);
+            bundle.setEpisodes(episodes);
+            bundle.setBanners(banners);
+            bundle.setActors(actors);
+            return bundle;
+        }
+        
+        final String bundleUrl = urlString.toString();
+        final String bundleLanguage = language;
+        return fetchOnce("bundle", bundleUrl, new Callable<SeriesBundle>() {
+            public SeriesBundle call() {
+                SeriesBundle bundle = TvdbParser.getSeriesBundle(bundleUrl, bundleLanguage);
+                // Nothing is cached unless every part of the zip file was read
+                if (bundle == null || bundle.getEpisodes().isEmpty()) {
+                    return null;
+                }
+                
+                putCached(CacheType.SERIES, seriesUrl, bundle.getSeries());
+                putCached(CacheType.EPISODE_LIST, episodesUrl, new ArrayList<Episode>(bundle.getEpisodes()));
+                putCached(CacheType.BANNERS, bannersUrl, bundle.getBanners());
+                putCached(CacheType.ACTORS, actorsUrl, new ArrayList<Actor>(bundle.getActors()));
+                return bundle;
+            }
+        });
+    }
+    
     /**
      * Get all the episodes from a specific season for a series.
      * Note: This could be a lot of records
@@ -226,7 +529,7 @@ public class TheTVDB {
      * @param language
      * @return
      */
-    public List<Episode> getSeasonEpisodes(String id, int season, String language) {
+    public List<Episode> getSeasonEpisodes(String id, final int season, String language) {
         StringBuilder urlString = new StringBuilder();
         try {
             urlString.append(getXmlMirror());
@@ -242,7 +545,27 @@ public class TheTVDB {
             return null;
         }
         
-        List<Episode> episodeList = TvdbParser.getAllEpisodes(urlString.toString(), season);
+        List<Episode> episodeList;
+        if (cache == null) {
+            final String episodesUrl = urlString.toString();
+            episodeList = fetchOnce("season" + season, episodesUrl, new Callable<List<Episode>>() {
+                public List<Episode> call() {
+                    return TvdbParser.getAllEpisodes(episodesUrl, season);
+                }
+            });
+        } else {
+            // The whole series is cached, so the season can be picked out of that
+            List<Episode> allEpisodes = getAllEpisodes(id, language);
+            episodeList = new ArrayList<Episode>();
+            if (allEpisodes != null) {
+                for (Episode episode : allEpisodes) {
+                    if (episode.getSeasonNumber() == season) {
+                        episodeList.add(episode);
+                    }
+                }
+            }
+        }
+        
         if (episodeList.isEmpty()) {
             return null;
         } else {
@@ -278,7 +601,7 @@ public class TheTVDB {
             return new Episode();
         }
 
-        return TvdbParser.getEpisode(urlString.toString());
+        return getEpisodeFromUrl(urlString.toString());
     }
 
     /**
@@ -309,7 +632,7 @@ public class TheTVDB {
             return new Episode();
         }
 
-        return TvdbParser.getEpisode(urlString.toString());
+        return getEpisodeFromUrl(urlString.toString());
     }
     
     /**
@@ -338,7 +661,7 @@ public class TheTVDB {
             return new Episode();
         }
 
-        return TvdbParser.getEpisode(urlString.toString());
+        return getEpisodeFromUrl(urlString.toString());
     }
 
     /**
@@ -354,7 +677,10 @@ public class TheTVDB {
             Date date;
             
             try {
-                date = DATE_FORMAT.parse(episode.getFirstAired());
+                // SimpleDateFormat is not thread safe
+                synchronized (DATE_FORMAT) {
+                    date = DATE_FORMAT.parse(episode.getFirstAired());
+                }
             } catch (ParseException error) {
                 date = null;
             }
@@ -382,7 +708,21 @@ public class TheTVDB {
             return new Banners();
         }
 
-        return TvdbParser.getBanners(urlString.toString());
+        Banners banners = (Banners) getCached(CacheType.BANNERS, urlString.toString());
+        if (banners == null) {
+            final String bannersUrl = urlString.toString();
+            banners = fetchOnce("banners", bannersUrl, new Callable<Banners>() {
+                public Banners call() {
+                    Banners seriesBanners = TvdbParser.getBanners(bannersUrl);
+                    if (!seriesBanners.getSeriesList().isEmpty() || !seriesBanners.getSeasonList().isEmpty()
+                            || !seriesBanners.getPosterList().isEmpty() || !seriesBanners.getFanartList().isEmpty()) {
+                        putCached(CacheType.BANNERS, bannersUrl, seriesBanners);
+                    }
+                    return seriesBanners;
+                }
+            });
+        }
+        return banners;
     }
     
     /**
@@ -402,7 +742,22 @@ public class TheTVDB {
             logger.severe(tw.getMessage());
             return new ArrayList<Actor>();
         }
-        return TvdbParser.getActors(urlString.toString());
+        
+        @SuppressWarnings("unchecked")
+        List<Actor> actors = (List<Actor>) getCached(CacheType.ACTORS, urlString.toString());
+        if (actors == null) {
+            final String actorsUrl = urlString.toString();
+            actors = fetchOnce("actors", actorsUrl, new Callable<List<Actor>>() {
+                public List<Actor> call() {
+                    List<Actor> seriesActors = TvdbParser.getActors(actorsUrl);
+                    if (!seriesActors.isEmpty()) {
+                        putCached(CacheType.ACTORS, actorsUrl, new ArrayList<Actor>(seriesActors));
+                    }
+                    return seriesActors;
+                }
+            });
+        }
+        return actors;
     }
     
     public List<Series> searchSeries(String title, String language) {
@@ -423,7 +778,116 @@ public class TheTVDB {
             return new ArrayList<Series>();
         }
         
-        return TvdbParser.getSeriesList(urlString.toString());
+        @SuppressWarnings("unchecked")
+        List<Series> seriesList = (List<Series>) getCached(CacheType.SEARCH, urlString.toString());
+        if (seriesList == null) {
+            final String searchUrl = urlString.toString();
+            seriesList = fetchOnce("search", searchUrl, new Callable<List<Series>>() {
+                public List<Series> call() {
+                    List<Series> foundSeries = TvdbParser.getSeriesList(searchUrl);
+                    if (!foundSeries.isEmpty()) {
+                        putCached(CacheType.SEARCH, searchUrl, new ArrayList<Series>(foundSeries));
+                    }
+                    return foundSeries;
+                }
+            });
+        }
+        return seriesList;
+    }
+    
+    /**
+     * Get an episode from the cache or TheTVDB
+     * @param urlString
+     * @return
+     */
+    private Episode getEpisodeFromUrl(final String urlString) {
+        Episode episode = (Episode) getCached(CacheType.EPISODE, urlString);
+        if (episode == null) {
+            episode = fetchOnce("episode", urlString, new Callable<Episode>() {
+                public Episode call() {
+                    Episode fetchedEpisode = TvdbParser.getEpisode(urlString);
+                    if (fetchedEpisode != null) {
+                        putCached(CacheType.EPISODE, urlString, fetchedEpisode);
+                    }
+                    return fetchedEpisode;
+                }
+            });
+        }
+        return episode;
+    }
+    
+    /**
+     * Fetch and parse the URL, unless another thread is already doing that, in which case its result is shared.
+     * The fetch is only shared while it runs, the results that are cached are taken from the cache after that.
+     * @param kind How the response is parsed, since the same URL can be parsed in more than one way
+     * @param urlString
+     * @param fetch
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T fetchOnce(String kind, String urlString, Callable<T> fetch) {
+        String key = kind + ":" + getCacheKey(urlString);
+        FutureTask<T> task = new FutureTask<T>(fetch);
+        Future<T> result = (Future<T>) fetches.putIfAbsent(key, task);
+        if (result == null) {
+            result = task;
+            try {
+                task.run();
+            } finally {
+                fetches.remove(key, task);
+            }
+        }
+        
+        try {
+            return result.get();
+        } catch (ExecutionException error) {
+            if (error.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) error.getCause();
+            }
+            if (error.getCause() instanceof Error) {
+                throw (Error) error.getCause();
+            }
+            throw new RuntimeException("The fetch of " + urlString + " failed", error.getCause());
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The fetch of " + urlString + " was interrupted", interrupted);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Episode> getCachedEpisodes(String urlString) {
+        return (List<Episode>) getCached(CacheType.EPISODE_LIST, urlString);
+    }
+    
+    /**
+     * Create the cache key for the URL.
+     * The mirror and API key are removed, because they can be different for each run.
+     * @param urlString
+     * @return
+     */
+    public static String getCacheKey(String urlString) {
+        String key = urlString;
+        String mirror = (mirrors == null) ? null : mirrors.findMirror(key);
+        if (mirror != null && key.startsWith(mirror + API_PATH)) {
+            key = key.substring(mirror.length() + API_PATH.length());
+        }
+        if (apiKey != null) {
+            key = key.replace(apiKey + "/", "");
+        }
+        return key;
+    }
+    
+    private static Object getCached(CacheType type, String urlString) {
+        if (cache == null) {
+            return null;
+        }
+        return cache.get(type, getCacheKey(urlString));
+    }
+    
+    private static void putCached(CacheType type, String urlString, Serializable value) {
+        if (cache != null) {
+            cache.put(type, getCacheKey(urlString), value);
+        }
     }
     
     /**
@@ -433,8 +897,18 @@ public class TheTVDB {
      */
     public static String getXmlMirror() throws Throwable {
         // Force a load of the mirror information if it doesn't exist
-        getMirrors();
-        return xmlMirror;
+        return getMirrors().getMirror(Mirrors.TYPE_XML) + API_PATH;
+    }
+    
+    /**
+     * Get the Zip Mirror URL
+     * @return
+     * @throws Throwable 
+     */
+    public static String getZipMirror() throws Throwable {
+        // Force a load of the mirror information if it doesn't exist
+        // The zip files are on the XML mirrors if there are no separate zip mirrors
+        return getMirrors().getMirror(Mirrors.TYPE_ZIP) + API_PATH;
     }
     
     /**
@@ -444,8 +918,20 @@ public class TheTVDB {
      */
     public static String getBannerMirror() {
         // Force a load of the mirror information if it doesn't exist
-        getMirrors();
-        return bannerMirror;
+        return getMirrors().getMirror(Mirrors.TYPE_BANNER) + BANNER_PATH;
     }
-    
+
+    /**
+     * Get the URL of an artwork file on the banner mirror.
+     * The parsed records only keep the path on the mirror, so cached records use the current mirror when read.
+     * @param path
+     * @return The URL, or the path unchanged if it's empty or already a URL
+     */
+    public static String getBannerUrl(String path) {
+        if (path == null || path.isEmpty() || path.contains("://")) {
+            return path;
+        }
+        return getBannerMirror() + path;
+    }
+
 }
@@ -0,0 +1,61 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list 
+ *  
+ *      Web: http://code.google.com/p/moviejukebox/
+ *  
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *  
+ *      For any reuse or distribution, you must make clear to others the 
+ *      license terms of this work.  
+ */
+package com.moviejukebox.thetvdb.cache;
+
+/**
+ * The kinds of TheTVDB responses that can be cached, with the default time to live for each one
+ */
+public enum CacheType {
+    SEARCH(1),
+    SERIES(3),
+    EPISODE(7),
+    EPISODE_LIST(1),
+    BANNERS(14),
+    ACTORS(14),
+    // The list of mirrors is still used after this, but it's refreshed in the background
+    MIRRORS(7),
+    // Raw responses are revalidated with the server before they are used, so they can be kept for longer
+    RESPONSE(28);
+    
+    private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+    
+    private long defaultTimeToLive;
+    
+    private CacheType(int days) {
+        this.defaultTimeToLive = days * MILLIS_PER_DAY;
+    }
+    
+    /**
+     * The default time to live in milliseconds
+     * @return
+     */
+    public long getDefaultTimeToLive() {
+        return this.defaultTimeToLive;
+    }
+
+    /**
+     * Set the cache type from a string, ignoring the case
+     * @param type
+     * @return
+     */
+    public static CacheType fromString(String type) {
+        if (type != null) {
+            for (CacheType cacheType : CacheType.values()) {
+                if (type.equalsIgnoreCase(cacheType.name())) {
+                    return cacheType;
+                }
+            }
+        }
+        throw new IllegalArgumentException("CacheType '" + type + "' does not exist");
+    }
+}
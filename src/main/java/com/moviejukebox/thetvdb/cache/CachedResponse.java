@@ -0,0 +1,60 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list 
+ *  
+ *      Web: http://code.google.com/p/moviejukebox/
+ *  
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *  
+ *      For any reuse or distribution, you must make clear to others the 
+ *      license terms of this work.  
+ */
+package com.moviejukebox.thetvdb.cache;
+
+import java.io.Serializable;
+
+/**
+ * The body of a response with the validators the server sent for it.
+ * The validators are sent back on the next request, so the server only has to send the body again if it has changed.
+ */
+public class CachedResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String etag = null;
+    private String lastModified = null;
+    private byte[] body = null;
+
+    public CachedResponse(String etag, String lastModified, byte[] body) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.body = body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return The body, or null if it was too large and is stored by itself
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer response = new StringBuffer("[CachedResponse ");
+
+        response.append("[etag=").append(etag).append("]");
+        response.append("[lastModified=").append(lastModified).append("]");
+        response.append("[body=").append(body == null ? 0 : body.length).append("]");
+
+        response.append("]");
+        return response.toString();
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list 
+ *  
+ *      Web: http://code.google.com/p/moviejukebox/
+ *  
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *  
+ *      For any reuse or distribution, you must make clear to others the 
+ *      license terms of this work.  
+ */
+package com.moviejukebox.thetvdb.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.moviejukebox.thetvdb.TheTVDB;
+
+/**
+ * Two tier cache for TheTVDB results.
+ * The most recently used results are kept in memory, all results are written to a directory on disk.
+ * When the directory grows beyond the maximum size the least recently used files are removed.
+ * Large bodies that are stored with a result are only written to disk, in a file of their own.
+ */
+public class DiskCache implements TvdbCache {
+    private static Logger logger = TheTVDB.getLogger();
+
+    private static final String EXTENSION = ".cache";
+    private static final String BODY_EXTENSION = ".body";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final long DEFAULT_MAX_SIZE = 64L * 1024L * 1024L;   // 64 MB
+    private static final int DEFAULT_MEMORY_ENTRIES = 500;
+
+    private File cacheDir;
+    private long maxSize;
+    private int maxMemoryEntries;
+    private long diskSize = 0;
+    private Map<CacheType, Long> timeToLive = new EnumMap<CacheType, Long>(CacheType.class);
+    private Map<String, CacheEntry> memory;
+    private Map<String, Long> diskIndex;
+
+    public DiskCache(File cacheDir) {
+        this(cacheDir, DEFAULT_MAX_SIZE, DEFAULT_MEMORY_ENTRIES);
+    }
+
+    @SuppressWarnings("serial")
+    public DiskCache(File cacheDir, long maxSize, int maxMemoryEntries) {
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+        this.maxMemoryEntries = maxMemoryEntries;
+
+        for (CacheType type : CacheType.values()) {
+            timeToLive.put(type, type.getDefaultTimeToLive());
+        }
+
+        // Both maps are kept in access order so the eldest entry is the least recently used
+        memory = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > DiskCache.this.maxMemoryEntries;
+            }
+        };
+        diskIndex = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            logger.warning("Unable to create the cache directory " + cacheDir.getAbsolutePath());
+            return;
+        }
+        loadIndex();
+    }
+
+    /**
+     * Set the time to live for a type of result
+     * @param type
+     * @param milliseconds
+     */
+    public void setTimeToLive(CacheType type, long milliseconds) {
+        timeToLive.put(type, milliseconds);
+    }
+
+    public long getTimeToLive(CacheType type) {
+        return timeToLive.get(type);
+    }
+
+    public Object get(CacheType type, String key) {
+        String storedKey = getStoredKey(type, key);
+        CacheEntry entry;
+        synchronized (memory) {
+            entry = memory.get(storedKey);
+        }
+
+        if (entry == null) {
+            entry = readEntry(storedKey);
+            if (entry == null) {
+                return null;
+            }
+            synchronized (memory) {
+                memory.put(storedKey, entry);
+            }
+        } else {
+            // Keep the file of a result used from memory away from the eviction
+            isStored(getFileName(storedKey));
+        }
+
+        if (isExpired(entry) || (entry.hasBody && !isStored(getBodyFileName(storedKey)))) {
+            remove(storedKey);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public void put(CacheType type, String key, Serializable value) {
+        String storedKey = getStoredKey(type, key);
+        CacheEntry entry = new CacheEntry(type, key, value);
+        synchronized (memory) {
+            memory.put(storedKey, entry);
+        }
+        // A body stored with the previous result doesn't belong to this one
+        removeFile(getBodyFileName(storedKey));
+        writeEntry(entry);
+    }
+
+    public InputStream put(CacheType type, String key, Serializable value, InputStream body) {
+        String storedKey = getStoredKey(type, key);
+        // The previous result is removed first, so its body is never returned with the new result
+        remove(storedKey);
+
+        File tempFile = getTempFile(getBodyFileName(storedKey));
+        try {
+            return new BodyStream(body, tempFile, new CacheEntry(type, key, value));
+        } catch (IOException error) {
+            logger.fine("Unable to write cache file " + tempFile.getName() + ": " + error.getMessage());
+            return body;
+        }
+    }
+
+    public InputStream getBody(CacheType type, String key) {
+        String fileName = getBodyFileName(getStoredKey(type, key));
+        if (!isStored(fileName)) {
+            return null;
+        }
+        File file = new File(cacheDir, fileName);
+        try {
+            InputStream in = new FileInputStream(file);
+            file.setLastModified(System.currentTimeMillis());
+            return in;
+        } catch (FileNotFoundException error) {
+            // Removed in the meantime
+            return null;
+        }
+    }
+
+    public void remove(CacheType type, String key) {
+        remove(getStoredKey(type, key));
+    }
+
+    private void remove(String storedKey) {
+        synchronized (memory) {
+            memory.remove(storedKey);
+        }
+        removeFile(getFileName(storedKey));
+        removeFile(getBodyFileName(storedKey));
+    }
+
+    private void removeFile(String fileName) {
+        synchronized (diskIndex) {
+            Long size = diskIndex.remove(fileName);
+            if (size == null) {
+                return;
+            }
+            diskSize -= size;
+        }
+        new File(cacheDir, fileName).delete();
+    }
+
+    /**
+     * The keys are only stored inside the cache files, so every file is read to find the matching ones.
+     */
+    public void removeAll(Collection<String> keyPrefixes) {
+        if (keyPrefixes.isEmpty()) {
+            return;
+        }
+
+        List<String> storedKeys = new ArrayList<String>();
+        synchronized (memory) {
+            for (Map.Entry<String, CacheEntry> entry : memory.entrySet()) {
+                if (startsWithAny(entry.getValue().key, keyPrefixes)) {
+                    storedKeys.add(entry.getKey());
+                }
+            }
+        }
+
+        List<String> fileNames;
+        synchronized (diskIndex) {
+            fileNames = new ArrayList<String>(diskIndex.keySet());
+        }
+        for (String fileName : fileNames) {
+            if (!fileName.endsWith(EXTENSION)) {
+                // A body is removed together with its result
+                continue;
+            }
+            CacheEntry entry = readEntryFile(fileName);
+            if (entry != null && startsWithAny(entry.key, keyPrefixes)) {
+                storedKeys.add(getStoredKey(entry.type, entry.key));
+            }
+        }
+
+        for (String storedKey : storedKeys) {
+            remove(storedKey);
+        }
+    }
+
+    private static boolean startsWithAny(String key, Collection<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        synchronized (diskIndex) {
+            for (String fileName : diskIndex.keySet()) {
+                new File(cacheDir, fileName).delete();
+            }
+            diskIndex.clear();
+            diskSize = 0;
+        }
+    }
+
+    /**
+     * Check whether a file is stored, which also marks it as used
+     * @param fileName
+     * @return
+     */
+    private boolean isStored(String fileName) {
+        synchronized (diskIndex) {
+            return diskIndex.get(fileName) != null;
+        }
+    }
+
+    private boolean isExpired(CacheEntry entry) {
+        return System.currentTimeMillis() - entry.created > getTimeToLive(entry.type);
+    }
+
+    /**
+     * Read the existing cache files, the last modified time is used as the last access time
+     */
+    private void loadIndex() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+                return Long.valueOf(file1.lastModified()).compareTo(file2.lastModified());
+            }
+        });
+
+        synchronized (diskIndex) {
+            for (File file : files) {
+                if (file.getName().endsWith(TEMP_EXTENSION)) {
+                    // Left over from an interrupted write
+                    file.delete();
+                } else if (file.getName().endsWith(EXTENSION) || file.getName().endsWith(BODY_EXTENSION)) {
+                    diskIndex.put(file.getName(), file.length());
+                    diskSize += file.length();
+                }
+            }
+        }
+        evict();
+    }
+
+    private CacheEntry readEntry(String storedKey) {
+        String fileName = getFileName(storedKey);
+        synchronized (diskIndex) {
+            if (diskIndex.get(fileName) == null) {
+                return null;
+            }
+        }
+
+        File file = new File(cacheDir, fileName);
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            CacheEntry entry = (CacheEntry) in.readObject();
+            if (!storedKey.equals(getStoredKey(entry.type, entry.key))) {
+                // Another key with the same hash
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (Exception error) {
+            logger.fine("Unable to read cache file " + fileName + ": " + error.getMessage());
+        } finally {
+            close(in);
+        }
+
+        // The file is unreadable, so get rid of it
+        remove(storedKey);
+        return null;
+    }
+
+    /**
+     * Read a cache file, without changing when it was last used
+     * @param fileName
+     * @return The entry, or null if the file can't be read
+     */
+    private CacheEntry readEntryFile(String fileName) {
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(new File(cacheDir, fileName))));
+            return (CacheEntry) in.readObject();
+        } catch (Exception error) {
+            logger.fine("Unable to read cache file " + fileName + ": " + error.getMessage());
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    private void writeEntry(CacheEntry entry) {
+        String fileName = getFileName(getStoredKey(entry.type, entry.key));
+        File file = new File(cacheDir, fileName);
+        File tempFile = getTempFile(fileName);
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeObject(entry);
+            out.close();
+            out = null;
+
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                logger.fine("Unable to write cache file " + fileName);
+                tempFile.delete();
+                return;
+            }
+        } catch (IOException error) {
+            logger.fine("Unable to write cache file " + fileName + ": " + error.getMessage());
+            close(out);
+            tempFile.delete();
+            return;
+        }
+
+        addFile(fileName, file.length());
+        evict();
+    }
+
+    /**
+     * Store the body that was written to the temporary file, followed by the result it belongs to
+     * @param tempFile
+     * @param entry
+     */
+    private void storeBody(File tempFile, CacheEntry entry) {
+        String storedKey = getStoredKey(entry.type, entry.key);
+        String fileName = getBodyFileName(storedKey);
+        File file = new File(cacheDir, fileName);
+        file.delete();
+        if (!tempFile.renameTo(file)) {
+            logger.fine("Unable to write cache file " + fileName);
+            tempFile.delete();
+            return;
+        }
+        addFile(fileName, file.length());
+
+        entry.hasBody = true;
+        synchronized (memory) {
+            memory.put(storedKey, entry);
+        }
+        writeEntry(entry);
+    }
+
+    private void addFile(String fileName, long size) {
+        synchronized (diskIndex) {
+            Long oldSize = diskIndex.put(fileName, size);
+            if (oldSize != null) {
+                diskSize -= oldSize;
+            }
+            diskSize += size;
+        }
+    }
+
+    private File getTempFile(String fileName) {
+        return new File(cacheDir, fileName + "." + Thread.currentThread().getId() + TEMP_EXTENSION);
+    }
+
+    /**
+     * Remove the least recently used files until the cache is within its maximum size
+     */
+    private void evict() {
+        synchronized (diskIndex) {
+            Iterator<Map.Entry<String, Long>> iterator = diskIndex.entrySet().iterator();
+            while (diskSize > maxSize && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                new File(cacheDir, eldest.getKey()).delete();
+                diskSize -= eldest.getValue();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * The same key can be used for different types of results, so the type is part of the stored key
+     * @param type
+     * @param key
+     * @return
+     */
+    private static String getStoredKey(CacheType type, String key) {
+        return type.name() + ":" + key;
+    }
+
+    /**
+     * Create a file name that is safe to use on every file system from the key
+     * @param key
+     * @return
+     */
+    private static String getFileName(String key) {
+        return getHash(key) + EXTENSION;
+    }
+
+    private static String getBodyFileName(String key) {
+        return getHash(key) + BODY_EXTENSION;
+    }
+
+    private static String getHash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder fileName = new StringBuilder();
+            for (byte b : hash) {
+                fileName.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return fileName.toString();
+        } catch (NoSuchAlgorithmException error) {
+            throw new RuntimeException("Unable to create the cache file name", error);
+        } catch (IOException error) {
+            throw new RuntimeException("Unable to create the cache file name", error);
+        }
+    }
+
+    private static void close(Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException error) {
+                // Stream was already closed
+            }
+        }
+    }
+
+    /**
+     * Copies the body to a temporary file while it's read. When the stream is closed the rest of the body is read
+     * as well, and the body is only stored if its end was reached.
+     */
+    private class BodyStream extends FilterInputStream {
+        private final File tempFile;
+        private final CacheEntry entry;
+        private OutputStream out;
+        private boolean complete = false;
+
+        private BodyStream(InputStream in, File tempFile, CacheEntry entry) throws IOException {
+            super(in);
+            this.tempFile = tempFile;
+            this.entry = entry;
+            this.out = new BufferedOutputStream(new FileOutputStream(tempFile));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value == -1) {
+                complete = true;
+            } else {
+                copy(new byte[] { (byte) value }, 0, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count == -1) {
+                complete = true;
+            } else {
+                copy(buffer, offset, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            // The skipped part is read, so it's copied as well
+            if (count <= 0) {
+                return 0;
+            }
+            return Math.max(0, read(new byte[(int) Math.min(count, 8192L)]));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (out != null && !complete) {
+                    byte[] buffer = new byte[8192];
+                    while (read(buffer) != -1) {
+                        // Copied by read
+                    }
+                }
+            } catch (IOException error) {
+                // Not complete, so the body isn't stored
+            } finally {
+                super.close();
+                if (out != null) {
+                    finish();
+                }
+            }
+        }
+
+        private void copy(byte[] buffer, int offset, int count) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.write(buffer, offset, count);
+            } catch (IOException error) {
+                logger.fine("Unable to write cache file " + tempFile.getName() + ": " + error.getMessage());
+                discard();
+            }
+        }
+
+        private void finish() {
+            if (!complete) {
+                discard();
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException error) {
+                logger.fine("Unable to write cache file " + tempFile.getName() + ": " + error.getMessage());
+                discard();
+                return;
+            }
+            out = null;
+            storeBody(tempFile, entry);
+        }
+
+        private void discard() {
+            DiskCache.close(out);
+            out = null;
+            tempFile.delete();
+        }
+    }
+
+    private static class CacheEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private CacheType type;
+        private String key;
+        private long created;
+        private Serializable value;
+        private boolean hasBody = false;
+
+        public CacheEntry(CacheType type, String key, Serializable value) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+            this.created = System.currentTimeMillis();
+        }
+    }
+}
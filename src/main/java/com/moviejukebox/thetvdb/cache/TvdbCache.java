@@ -0,0 +1,85 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list 
+ *  
+ *      Web: http://code.google.com/p/moviejukebox/
+ *  
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *  
+ *      For any reuse or distribution, you must make clear to others the 
+ *      license terms of this work.  
+ */
+package com.moviejukebox.thetvdb.cache;
+
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * Storage for the parsed results of TheTVDB requests.
+ * The key is the request URL without the mirror and API key, so it stays the same between runs.
+ */
+public interface TvdbCache {
+
+    /**
+     * Get a previously stored result
+     * @param type
+     * @param key
+     * @return The result, or null if it isn't stored or has expired
+     */
+    Object get(CacheType type, String key);
+
+    /**
+     * Store a result, it will expire after the time to live for the type
+     * @param type
+     * @param key
+     * @param value
+     */
+    void put(CacheType type, String key, Serializable value);
+
+    /**
+     * Store a result together with a body that is too large to keep in memory.
+     * The body is written to the cache while it's read from the returned stream, and only stored if the stream has
+     * been read to its end when it's closed. The result isn't returned by get without its body.
+     * @param type
+     * @param key
+     * @param value
+     * @param body
+     * @return The stream to read the body from
+     */
+    InputStream put(CacheType type, String key, Serializable value, InputStream body);
+
+    /**
+     * Get the body that was stored together with a result
+     * @param type
+     * @param key
+     * @return The body, or null if it isn't stored
+     */
+    InputStream getBody(CacheType type, String key);
+
+    /**
+     * The time after which the results of a type expire
+     * @param type
+     * @return The time to live in milliseconds
+     */
+    long getTimeToLive(CacheType type);
+
+    /**
+     * Remove a stored result
+     * @param type
+     * @param key
+     */
+    void remove(CacheType type, String key);
+
+    /**
+     * Remove the stored results for every key that starts with one of the prefixes
+     * @param keyPrefixes
+     */
+    void removeAll(Collection<String> keyPrefixes);
+
+    /**
+     * Remove all stored results
+     */
+    void clear();
+}
@@ -12,11 +12,17 @@
  */
 package com.moviejukebox.thetvdb.model;
 
+import java.io.Serializable;
+
+import com.moviejukebox.thetvdb.TheTVDB;
+
 /**
  *
  * @author matthew.altman
  */
-public class Actor implements Comparable<Actor> {
+public class Actor implements Comparable<Actor>, Serializable {
+    private static final long serialVersionUID = 2L;
+
     private int id;
     private String name;
     private String role;
@@ -56,7 +62,7 @@ public class Actor implements Comparable<Actor> {
     }
 
     public String getImage() {
-        return image;
+        return TheTVDB.getBannerUrl(image);
     }
 
     public void setImage(String image) {
@@ -12,11 +12,16 @@
  */
 package com.moviejukebox.thetvdb.model;
 
+import java.io.Serializable;
+
+import com.moviejukebox.thetvdb.TheTVDB;
+
 /**
  *
  * @author altman.matthew
  */
-public class Banner {
+public class Banner implements Serializable {
+    private static final long serialVersionUID = 2L;
 
     private int             id;
     private String          url;
@@ -30,7 +35,7 @@ public class Banner {
     private int             season = 0;
 
     public String getUrl() {
-        return url;
+        return TheTVDB.getBannerUrl(url);
     }
 
     public void setUrl(String url) {
@@ -38,7 +43,7 @@ public class Banner {
     }
 
     public String getVignette() {
-        return vignette;
+        return TheTVDB.getBannerUrl(vignette);
     }
 
     public void setVignette(String vignette) {
@@ -46,7 +51,7 @@ public class Banner {
     }
 
     public String getThumb() {
-        return thumb;
+        return TheTVDB.getBannerUrl(thumb);
     }
 
     public void setThumb(String thumb) {
@@ -12,6 +12,7 @@
  */
 package com.moviejukebox.thetvdb.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,7 +20,8 @@ import java.util.List;
  *
  * @author matthew.altman
  */
-public class Banners {
+public class Banners implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private List<Banner> seriesList = new ArrayList<Banner>();
     private List<Banner> seasonList = new ArrayList<Banner>();
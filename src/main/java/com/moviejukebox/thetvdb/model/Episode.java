@@ -12,14 +12,18 @@
  */
 package com.moviejukebox.thetvdb.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.moviejukebox.thetvdb.TheTVDB;
+
 /**
  *
  * @author matthew.altman
  */
-public class Episode {
+public class Episode implements Serializable {
+    private static final long serialVersionUID = 2L;
 
     private String id;
     private String combinedEpisodeNumber;
@@ -231,7 +235,7 @@ public class Episode {
     }
 
     public String getFilename() {
-        return filename;
+        return TheTVDB.getBannerUrl(filename);
     }
 
     public void setFilename(String filename) {
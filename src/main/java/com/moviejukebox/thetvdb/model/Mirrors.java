@@ -12,8 +12,13 @@
  */
 package com.moviejukebox.thetvdb.model;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import org.w3c.dom.Document;
@@ -24,11 +29,18 @@ import org.w3c.dom.NodeList;
 import com.moviejukebox.thetvdb.tools.DOMHelper;
 
 /**
+ * The mirrors of TheTVDB, with the health of each mirror.
+ * The latency and error rate of every request to a mirror are tracked as moving averages, requests go
+ * to the fastest mirror that is healthy. A mirror that fails several times in a row is ejected and only
+ * tried again, with a single request, after a while. That time doubles every time the mirror fails again.
+ * The mirrors are serializable with their health, so they can be kept between runs.
  *
  * @author altman.matthew
  * @author stuart.boston
  */
-public class Mirrors {
+public class Mirrors implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     public static final String TYPE_XML = "XML";
     public static final String TYPE_BANNER = "BANNER";
@@ -41,9 +53,20 @@ public class Mirrors {
     
     private static final Random RNDM = new Random();
     
+    // Weight of the newest request in the moving averages
+    private static final double EWMA_WEIGHT = 0.3;
+    private static final double MAX_ERROR_RATE = 0.5;
+    private static final int MAX_FAILURES = 3;
+    // A failed request counts as a very slow one, so the mirror drops behind the others
+    private static final long FAILURE_LATENCY = 10000L;
+    private static final long PROBE_DELAY = 30000L;
+    private static final long MAX_PROBE_DELAY = 30L * 60L * 1000L;
+    
     private List<String> xmlList = new ArrayList<String>();
     private List<String> bannerList = new ArrayList<String>();
     private List<String> zipList = new ArrayList<String>();
+    private Map<String, Health> health = new HashMap<String, Health>();
+    private long retrieved = System.currentTimeMillis();
     
     public Mirrors(String apiKey) {
         // Make this synchronized so that only one 
@@ -69,19 +92,182 @@ public class Mirrors {
         }
     }
     
-    public String getMirror(String type) {
-        String url = null;
-        if (type.equals(TYPE_XML) && !xmlList.isEmpty()) {
-            url = xmlList.get(RNDM.nextInt(xmlList.size()));
-        } else if (type.equals(TYPE_BANNER) && !bannerList.isEmpty()) {
-            url = bannerList.get(RNDM.nextInt(bannerList.size()));
-        } else if (type.equals(TYPE_ZIP) && !zipList.isEmpty()) {
-            url = zipList.get(RNDM.nextInt(zipList.size()));
+    /**
+     * @return the time in milliseconds at which the list of mirrors was read from TheTVDB
+     */
+    public synchronized long getRetrieved() {
+        return retrieved;
+    }
+    
+    /**
+     * Replace the list of mirrors with a newer one.
+     * The health of the mirrors that are still on the list is kept.
+     * @param newMirrors
+     */
+    public synchronized void update(Mirrors newMirrors) {
+        Map<String, Health> newHealth = new HashMap<String, Health>();
+        for (String mirror : newMirrors.health.keySet()) {
+            newHealth.put(mirror, getHealth(mirror));
+        }
+        xmlList = new ArrayList<String>(newMirrors.xmlList);
+        bannerList = new ArrayList<String>(newMirrors.bannerList);
+        zipList = new ArrayList<String>(newMirrors.zipList);
+        health = newHealth;
+        retrieved = newMirrors.retrieved;
+    }
+    
+    /**
+     * Get the fastest healthy mirror for the type.
+     * The ZIP files are on the XML mirrors when there are no separate ZIP mirrors.
+     * @param type
+     * @return the mirror, or null if there are no mirrors of the type
+     */
+    public synchronized String getMirror(String type) {
+        return selectMirror(getList(type), null, true);
+    }
+    
+    /**
+     * @param type
+     * @return true if there is at least one mirror of the type, healthy or not
+     */
+    public synchronized boolean hasMirror(String type) {
+        return !getList(type).isEmpty();
+    }
+    
+    /**
+     * Get the mirror the URL points to
+     * @param url
+     * @return the mirror, or null if the URL isn't on one of the mirrors
+     */
+    public synchronized String findMirror(String url) {
+        String found = null;
+        for (String mirror : health.keySet()) {
+            if (url.startsWith(mirror) && (found == null || mirror.length() > found.length())) {
+                found = mirror;
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Get another mirror to send the request to the URL to, after the request failed on the mirror.
+     * @param url
+     * @param failedMirrors the mirrors that the request has already failed on
+     * @return the fastest healthy mirror of the same type, or null if there is none left
+     */
+    public synchronized String getAlternative(String url, List<String> failedMirrors) {
+        String type = TYPE_XML;
+        if (url.contains("/banners/")) {
+            type = TYPE_BANNER;
+        } else if (url.endsWith(".zip")) {
+            type = TYPE_ZIP;
+        }
+        return selectMirror(getList(type), failedMirrors, false);
+    }
+    
+    /**
+     * Record a request that the mirror answered
+     * @param mirror
+     * @param latency the time in milliseconds until the response started
+     */
+    public synchronized void recordSuccess(String mirror, long latency) {
+        Health mirrorHealth = getHealth(mirror);
+        mirrorHealth.addLatency(latency);
+        mirrorHealth.errorRate -= EWMA_WEIGHT * mirrorHealth.errorRate;
+        mirrorHealth.failures = 0;
+        mirrorHealth.probeDelay = PROBE_DELAY;
+        mirrorHealth.probeStarted = 0;
+        mirrorHealth.ejectedUntil = 0;
+    }
+    
+    /**
+     * Record a request that the mirror could not answer
+     * @param mirror
+     */
+    public synchronized void recordFailure(String mirror) {
+        Health mirrorHealth = getHealth(mirror);
+        mirrorHealth.addLatency(FAILURE_LATENCY);
+        mirrorHealth.errorRate += EWMA_WEIGHT * (1.0 - mirrorHealth.errorRate);
+        mirrorHealth.failures++;
+        if (mirrorHealth.isEjected()) {
+            // The probe failed, so wait longer before the next one
+            mirrorHealth.probeDelay = Math.min(MAX_PROBE_DELAY, mirrorHealth.probeDelay * 2);
+        } else if (mirrorHealth.failures < MAX_FAILURES && mirrorHealth.errorRate <= MAX_ERROR_RATE) {
+            return;
+        }
+        mirrorHealth.ejectedUntil = System.currentTimeMillis() + mirrorHealth.probeDelay;
+        mirrorHealth.probeStarted = 0;
+    }
+    
+    /**
+     * @param mirror
+     * @return false if the mirror has been ejected because of its errors
+     */
+    public synchronized boolean isHealthy(String mirror) {
+        return !getHealth(mirror).isEjected();
+    }
+    
+    private List<String> getList(String type) {
+        if (type.equals(TYPE_XML)) {
+            return xmlList;
+        } else if (type.equals(TYPE_BANNER)) {
+            return bannerList;
+        } else if (type.equals(TYPE_ZIP)) {
+            return zipList.isEmpty() ? xmlList : zipList;
         }
-        return url;
+        return new ArrayList<String>();
+    }
+    
+    /**
+     * Pick the fastest healthy mirror. A mirror that hasn't been used yet is tried before the others,
+     * so every mirror gets measured. When the time of an ejected mirror is up, it gets the next request
+     * as a probe. If all mirrors are ejected, the one that is up for a probe first is used anyway,
+     * unless ejected mirrors aren't allowed.
+     */
+    private String selectMirror(List<String> mirrors, List<String> excluded, boolean allowEjected) {
+        long now = System.currentTimeMillis();
+        List<String> untried = new ArrayList<String>();
+        String fastest = null;
+        String leastEjected = null;
+        for (String mirror : mirrors) {
+            if (excluded != null && excluded.contains(mirror)) {
+                continue;
+            }
+            Health mirrorHealth = getHealth(mirror);
+            if (mirrorHealth.isProbeDue(now)) {
+                mirrorHealth.probeStarted = now;
+                return mirror;
+            }
+            if (mirrorHealth.isEjected()) {
+                if (leastEjected == null || mirrorHealth.ejectedUntil < getHealth(leastEjected).ejectedUntil) {
+                    leastEjected = mirror;
+                }
+            } else if (mirrorHealth.requests == 0) {
+                untried.add(mirror);
+            } else if (fastest == null || mirrorHealth.latency < getHealth(fastest).latency) {
+                fastest = mirror;
+            }
+        }
+        if (!untried.isEmpty()) {
+            return untried.get(RNDM.nextInt(untried.size()));
+        }
+        if (fastest == null && allowEjected) {
+            return leastEjected;
+        }
+        return fastest;
+    }
+    
+    private Health getHealth(String mirror) {
+        Health mirrorHealth = health.get(mirror);
+        if (mirrorHealth == null) {
+            mirrorHealth = new Health();
+            health.put(mirror, mirrorHealth);
+        }
+        return mirrorHealth;
     }
     
     private void addMirror(int typeMask, String url) {
+        getHealth(url);
         switch (typeMask) {
             case MASK_XML:
                 xmlList.add(url);
@@ -113,4 +299,64 @@ public class Mirrors {
                 break;
         }
     }
+    
+    /**
+     * The mirrors can be saved while requests are made, so their health is written under the lock
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+    
+    @Override
+    public synchronized String toString() {
+        StringBuffer mirrors = new StringBuffer("[Mirrors ");
+        for (Map.Entry<String, Health> mirror : health.entrySet()) {
+            mirrors.append("[").append(mirror.getKey()).append("=").append(mirror.getValue()).append("]");
+        }
+        mirrors.append("]");
+        return mirrors.toString();
+    }
+    
+    private static class Health implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private double latency = 0;
+        private double errorRate = 0;
+        private long requests = 0;
+        private int failures = 0;
+        // Stays set after the time is up, until the mirror answers a probe
+        private long ejectedUntil = 0;
+        private long probeDelay = PROBE_DELAY;
+        // A probe of an earlier run never reports back
+        private transient long probeStarted = 0;
+        
+        private void addLatency(long requestLatency) {
+            if (requests == 0) {
+                latency = requestLatency;
+            } else {
+                latency += EWMA_WEIGHT * (requestLatency - latency);
+            }
+            requests++;
+        }
+        
+        private boolean isEjected() {
+            return ejectedUntil > 0;
+        }
+        
+        /**
+         * A probe that didn't report back, because its result came from the cache, is given up on after a while
+         */
+        private boolean isProbeDue(long now) {
+            return isEjected() && ejectedUntil <= now && (probeStarted == 0 || now - probeStarted > PROBE_DELAY);
+        }
+        
+        @Override
+        public String toString() {
+            StringBuffer health = new StringBuffer();
+            health.append("[latency=").append(Math.round(latency)).append("ms]");
+            health.append("[errorRate=").append(Math.round(errorRate * 100)).append("%]");
+            health.append("[ejected=").append(isEjected()).append("]");
+            return health.toString();
+        }
+    }
 }
@@ -12,14 +12,18 @@
  */
 package com.moviejukebox.thetvdb.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.moviejukebox.thetvdb.TheTVDB;
+
 /**
  *
  * @author altman.matthew
  */
-public class Series {
+public class Series implements Serializable {
+    private static final long serialVersionUID = 2L;
 
     private String id;
     private String seriesId;
@@ -76,7 +80,7 @@ public class Series {
     }
 
     public String getBanner() {
-        return banner;
+        return TheTVDB.getBannerUrl(banner);
     }
 
     public void setBanner(String banner) {
@@ -196,7 +200,7 @@ public class Series {
     }
 
     public String getFanart() {
-        return fanart;
+        return TheTVDB.getBannerUrl(fanart);
     }
 
     public void setFanart(String fanart) {
@@ -212,7 +216,7 @@ public class Series {
     }
 
     public String getPoster() {
-        return poster;
+        return TheTVDB.getBannerUrl(poster);
     }
 
     public void setPoster(String poster) {
@@ -0,0 +1,74 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list 
+ *  
+ *      Web: http://code.google.com/p/moviejukebox/
+ *  
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *  
+ *      For any reuse or distribution, you must make clear to others the 
+ *      license terms of this work.  
+ */
+package com.moviejukebox.thetvdb.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything that TheTVDB provides about a series in a single zip file
+ */
+public class SeriesBundle implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Series series;
+    private List<Episode> episodes = new ArrayList<Episode>();
+    private Banners banners = new Banners();
+    private List<Actor> actors = new ArrayList<Actor>();
+
+    public Series getSeries() {
+        return series;
+    }
+
+    public void setSeries(Series series) {
+        this.series = series;
+    }
+
+    public List<Episode> getEpisodes() {
+        return episodes;
+    }
+
+    public void setEpisodes(List<Episode> episodes) {
+        this.episodes = episodes;
+    }
+
+    public Banners getBanners() {
+        return banners;
+    }
+
+    public void setBanners(Banners banners) {
+        this.banners = banners;
+    }
+
+    public List<Actor> getActors() {
+        return actors;
+    }
+
+    public void setActors(List<Actor> actors) {
+        this.actors = actors;
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer bundle = new StringBuffer("[SeriesBundle ");
+
+        bundle.append("[series=").append(series).append("]");
+        bundle.append("[episodes=").append(episodes.size()).append("]");
+        bundle.append("[banners=").append(banners).append("]");
+        bundle.append("[actors=").append(actors.size()).append("]");
+
+        bundle.append("]");
+        return bundle.toString();
+    }
+}
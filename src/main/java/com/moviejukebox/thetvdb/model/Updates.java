@@ -0,0 +1,68 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list 
+ *  
+ *      Web: http://code.google.com/p/moviejukebox/
+ *  
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *  
+ *      For any reuse or distribution, you must make clear to others the 
+ *      license terms of this work.  
+ */
+package com.moviejukebox.thetvdb.model;
+
+import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The series that have changed on TheTVDB, taken from one of the updates files
+ */
+public class Updates implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long time = 0;
+    private Set<String> seriesIds = new LinkedHashSet<String>();
+
+    /**
+     * The server time the updates file was created, in seconds
+     * @return
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    /**
+     * The series that have changed, including the series that only had episodes or banners changed
+     * @return
+     */
+    public Set<String> getSeriesIds() {
+        return seriesIds;
+    }
+
+    public void setSeriesIds(Set<String> seriesIds) {
+        this.seriesIds = seriesIds;
+    }
+
+    public void addSeriesId(String seriesId) {
+        if (seriesId != null && !seriesId.isEmpty()) {
+            this.seriesIds.add(seriesId);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer updates = new StringBuffer("[Updates ");
+
+        updates.append("[time=").append(time).append("]");
+        updates.append("[seriesIds=").append(seriesIds.size()).append("]");
+
+        updates.append("]");
+        return updates.toString();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list
+ *
+ *      Web: http://code.google.com/p/moviejukebox/
+ *
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *
+ *      For any reuse or distribution, you must make clear to others the
+ *      license terms of this work.
+ */
+package com.moviejukebox.thetvdb.tools;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.moviejukebox.thetvdb.TheTVDB;
+
+/**
+ * Stops the requests to a host that keeps failing, so they fail right away instead of waiting for a timeout.
+ * After several failures in a row the circuit of the host is opened for a while. When that time is up, a
+ * single request is let through as a trial. If it succeeds, the circuit is closed again, otherwise it's
+ * opened again for twice as long.
+ */
+public class CircuitBreaker {
+    private static Logger logger = TheTVDB.getLogger();
+
+    private static final int MAX_FAILURES = 3;
+    private static final long OPEN_TIME = 30000L;
+    private static final long MAX_OPEN_TIME = 5L * 60L * 1000L;
+
+    private final int maxFailures;
+    private final long openTime;
+    private final long maxOpenTime;
+    private Map<String, Circuit> circuits = new HashMap<String, Circuit>();
+
+    public CircuitBreaker() {
+        this(MAX_FAILURES, OPEN_TIME, MAX_OPEN_TIME);
+    }
+
+    /**
+     * @param maxFailures The number of failures in a row that open the circuit
+     * @param openTime How long the circuit is opened at first
+     * @param maxOpenTime The longest time the circuit is opened after failed trials
+     */
+    CircuitBreaker(int maxFailures, long openTime, long maxOpenTime) {
+        this.maxFailures = maxFailures;
+        this.openTime = openTime;
+        this.maxOpenTime = maxOpenTime;
+    }
+
+    /**
+     * Check that a request can be sent to the host
+     * @param host
+     * @throws HostUnavailableException When the circuit of the host is open
+     */
+    public synchronized void check(String host) throws HostUnavailableException {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null || !circuit.isOpen()) {
+            return;
+        }
+        long now = now();
+        // A trial that didn't report back, because the thread was stopped, is given up on after a while
+        if (circuit.openUntil <= now && (circuit.trialStarted == 0 || now - circuit.trialStarted > circuit.openTime)) {
+            circuit.trialStarted = now;
+            return;
+        }
+        long wait = Math.max(0L, circuit.openUntil - now) / 1000L;
+        throw new HostUnavailableException("The requests to " + host + " are stopped after " + circuit.failures
+                + " failures in a row, the next try is in " + wait + " seconds");
+    }
+
+    /**
+     * Record a request that the host answered
+     * @param host
+     */
+    public synchronized void recordSuccess(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            return;
+        }
+        if (circuit.isOpen()) {
+            logger.fine("The requests to " + host + " are sent again");
+        }
+        circuits.remove(host);
+    }
+
+    /**
+     * Record a request that the host didn't answer, or answered with a server error
+     * @param host
+     */
+    public synchronized void recordFailure(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            circuit = new Circuit(openTime);
+            circuits.put(host, circuit);
+        }
+        circuit.failures++;
+        if (circuit.isOpen()) {
+            // The trial failed, so wait longer before the next one
+            circuit.openTime = Math.min(maxOpenTime, circuit.openTime * 2);
+        } else if (circuit.failures < maxFailures) {
+            return;
+        }
+        circuit.openUntil = now() + circuit.openTime;
+        circuit.trialStarted = 0;
+        logger.fine("The requests to " + host + " are stopped for " + (circuit.openTime / 1000L) + " seconds after "
+                + circuit.failures + " failures in a row");
+    }
+
+    /**
+     * The current time, tests replace it to avoid waiting for the circuits
+     * @return
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static class Circuit {
+        private int failures = 0;
+        // Stays set after the time is up, until a trial succeeds
+        private long openUntil = 0;
+        private long openTime;
+        private long trialStarted = 0;
+
+        private Circuit(long openTime) {
+            this.openTime = openTime;
+        }
+
+        private boolean isOpen() {
+            return openUntil > 0;
+        }
+    }
+}
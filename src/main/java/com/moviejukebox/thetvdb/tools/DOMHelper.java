@@ -12,12 +12,11 @@
  */
 package com.moviejukebox.thetvdb.tools;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
-import java.io.UnsupportedEncodingException;
+import java.util.Random;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -36,6 +35,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import com.moviejukebox.thetvdb.TheTVDB;
@@ -49,8 +49,27 @@ public class DOMHelper {
     private static Logger logger = TheTVDB.getLogger();
     
     private static final String YES = "yes";
-    private static final String ENCODING = "UTF-8";
-    private static final int RETRY_COUNT = 5;
+    static final int RETRY_COUNT = 5;
+    // The wait before the first retry, it doubles with every retry up to the maximum
+    private static final long RETRY_DELAY = 500L;
+    private static final long MAX_RETRY_DELAY = 8000L;
+    private static final Random RNDM = new Random();
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+
+    // DocumentBuilders are not thread safe, so each thread gets its own one to reuse
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            try {
+                synchronized (DOCUMENT_BUILDER_FACTORY) {
+                    return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+                }
+            } catch (ParserConfigurationException error) {
+                throw new RuntimeException("Unable to parse TheTVDb response, please try again later.", error);
+            }
+        }
+    };
 
     // Hide the constructor
     protected DOMHelper() {
@@ -77,73 +96,150 @@ public class DOMHelper {
     }
 
     /**
-     * Get a DOM document from the supplied URL
+     * Get a DOM document from the supplied URL.
+     * This can be called from several threads at once, each download and parse is independent.
+     * The response is parsed as it is downloaded, it is never held as a string.
+     * A document without any IDs is a valid empty result, e.g. a search without matches, and is returned
+     * right away. A response that isn't complete, has an empty ID, or failed because of the connection
+     * or a server error is tried again after a while, other errors are not.
      * @param url
      * @return
      * @throws Exception 
      */
-    public static synchronized Document getEventDocFromUrl(String url) {
-        String webPage = null;
-        InputStream in = null;
+    public static Document getEventDocFromUrl(String url) {
         int retryCount = 0;     // Count the number of times we download the web page
-        boolean valid = false;  // Is the web page valid
         
-        try {
-            while (!valid && (retryCount < RETRY_COUNT)) {
-                retryCount++;
-//                logger.fine("Try #" + retryCount + " for " + url);  // XXX DEBUG
-                webPage = WebBrowser.request(url);
+        while (true) {
+            InputStream in = null;
+            IOException failure = null;
+            
+            try {
+                InputSource source = WebBrowser.requestSource(url);
+                in = source.getByteStream();
                 
-                // See if the ID is null
-                if (!webPage.contains("<id>") || webPage.contains("<id></id>")) {
-                    // Wait an increasing amount of time the more retries that happen
-                    waiting(retryCount * 500);
-                    continue;
-                } else {
-                    valid = true;
+                DocumentBuilder db = DOCUMENT_BUILDER.get();
+                db.reset();
+
+                Document doc = db.parse(source);
+                doc.getDocumentElement().normalize();
+                if (!hasEmptyId(doc)) {
+                    return doc;
+                }
+                failure = new IOException("The response has an empty ID");
+            } catch (SAXException error) {
+                // Not a complete XML document, so treat it the same as one with an empty ID
+                failure = new IOException("The response is not complete: " + error.getMessage(), error);
+            } catch (IOException error) {
+                if (!isRetryable(error)) {
+                    throw new RuntimeException("Unable to download URL: " + url, error);
+                }
+                failure = error;
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException error) {
+                        // Input Stream was already closed or null
+                        in = null;
+                    }
                 }
             }
+            
+            retryCount++;
+            if (retryCount >= RETRY_COUNT) {
+                // Couldn't get a valid webPage so, quit.
+                throw new RuntimeException("Failed to download data from " + url, failure);
+            }
+            logger.fine("Try #" + retryCount + " for " + url + " failed: " + failure.getMessage());
+            backOff(retryCount, failure);
+        }
+    }
 
-            // Couldn't get a valid webPage so, quit.
-            if (!valid) {
-                throw new RuntimeException("Failed to download data from " + url);
+    /**
+     * Check whether the document has an ID that is empty, which means it wasn't sent completely
+     * @param doc
+     * @return
+     */
+    private static boolean hasEmptyId(Document doc) {
+        NodeList ids = doc.getElementsByTagName("id");
+        for (int loop = 0; loop < ids.getLength(); loop++) {
+            if (ids.item(loop).getTextContent().isEmpty()) {
+                return true;
             }
-            
-            in = new ByteArrayInputStream(webPage.getBytes(ENCODING));
-        } catch (UnsupportedEncodingException error) {
-            throw new RuntimeException("Unable to encode URL: " + url, error);
-        } catch (IOException error) {
-            throw new RuntimeException("Unable to download URL: " + url, error);
         }
-        
+        return false;
+    }
+
+    /**
+     * A request that failed because of the connection or a server error can succeed later.
+     * A request to a host that has been stopped by the circuit breaker fails right away, it isn't tried again.
+     * @param error
+     * @return true if the request can be tried again
+     */
+    static boolean isRetryable(IOException error) {
+        if (error instanceof HostUnavailableException) {
+            return false;
+        }
+        if (error instanceof HttpStatusException) {
+            return ((HttpStatusException) error).isRetryable();
+        }
+        return true;
+    }
+
+    /**
+     * Wait before the next try of a request.
+     * The wait doubles with every retry, a random part of it is left out so requests that failed at the same
+     * time aren't all tried again at the same time. When the server asked to wait longer, that time is used.
+     * @param retryCount The number of tries that have failed
+     * @param failure The error of the last try
+     */
+    static void backOff(int retryCount, IOException failure) {
+        long delay = Math.min(MAX_RETRY_DELAY, RETRY_DELAY << Math.min(retryCount - 1, 16));
+        delay = delay / 2 + (long) (RNDM.nextDouble() * (delay / 2));
+        if (failure instanceof HttpStatusException) {
+            delay = Math.max(delay, Math.min(MAX_RETRY_DELAY, ((HttpStatusException) failure).getRetryAfter()));
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to try again", interrupted);
+        }
+    }
+
+    /**
+     * Get a DOM document from a stream that is already open, e.g. an entry in a zip file.
+     * The stream is left open so the caller can carry on reading from it.
+     * @param in
+     * @return
+     */
+    public static Document getEventDocFromStream(InputStream in) {
         Document doc = null;
         
         try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            DocumentBuilder db = dbf.newDocumentBuilder();
+            DocumentBuilder db = DOCUMENT_BUILDER.get();
+            db.reset();
 
-            doc = db.parse(in);
+            // The parser closes the stream when it's done
+            doc = db.parse(new NonClosingInputStream(in));
             doc.getDocumentElement().normalize();
-        } catch (ParserConfigurationException error) {
-            throw new RuntimeException("Unable to parse TheTVDb response, please try again later.", error);
         } catch (SAXException error) {
             throw new RuntimeException("Unable to parse TheTVDb response, please try again later.", error);
         } catch (IOException error) {
             throw new RuntimeException("Unable to parse TheTVDb response, please try again later.", error);
-        } finally {
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException error) {
-                    // Input Stream was already closed or null
-                    in = null;
-                }
-            }
         }
         
         return doc;
     }
 
+    /**
+     * Create an empty DOM document
+     * @return
+     */
+    public static Document createDocument() {
+        return DOCUMENT_BUILDER.get().newDocument();
+    }
+
     /**
      * Convert a DOM document to a string
      * @param doc
@@ -205,17 +301,4 @@ public class DOMHelper {
 
         return;
     }
-
-
-    /**
-     * Wait for a few milliseconds
-     * @param milliseconds
-     */
-    private static void waiting (int milliseconds){
-        long t0, t1;
-        t0 =  System.currentTimeMillis();
-        do {
-            t1 = System.currentTimeMillis();
-        } while ((t1 - t0) < milliseconds);
-    }
 }
@@ -0,0 +1,27 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list
+ *
+ *      Web: http://code.google.com/p/moviejukebox/
+ *
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *
+ *      For any reuse or distribution, you must make clear to others the
+ *      license terms of this work.
+ */
+package com.moviejukebox.thetvdb.tools;
+
+import java.io.IOException;
+
+/**
+ * A request that wasn't sent at all, because the host has failed too often
+ */
+public class HostUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public HostUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list
+ *
+ *      Web: http://code.google.com/p/moviejukebox/
+ *
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *
+ *      For any reuse or distribution, you must make clear to others the
+ *      license terms of this work.
+ */
+package com.moviejukebox.thetvdb.tools;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * The server answered a request with an error status
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final long retryAfter;
+
+    /**
+     * @param message
+     * @param statusCode The HTTP status code of the response
+     * @param retryAfter The time in milliseconds the server asked to wait before the next request, or 0
+     * @param cause
+     */
+    public HttpStatusException(String message, int statusCode, long retryAfter, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return true if the server had an error of its own
+     */
+    public boolean isServerError() {
+        return statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    /**
+     * A server error or a request that was turned away for now can succeed later,
+     * any other error will be the same the next time
+     * @return true if the request can be tried again
+     */
+    public boolean isRetryable() {
+        return isServerError() || statusCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT || statusCode == 429;
+    }
+}
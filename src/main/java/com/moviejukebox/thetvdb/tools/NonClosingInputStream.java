@@ -0,0 +1,31 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list 
+ *  
+ *      Web: http://code.google.com/p/moviejukebox/
+ *  
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *  
+ *      For any reuse or distribution, you must make clear to others the 
+ *      license terms of this work.  
+ */
+package com.moviejukebox.thetvdb.tools;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * Stream that ignores close, so a parser can read an entry of a zip file without closing the whole zip file
+ */
+public class NonClosingInputStream extends FilterInputStream {
+
+    public NonClosingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public void close() {
+        // Leave the underlying stream open
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list
+ *
+ *      Web: http://code.google.com/p/moviejukebox/
+ *
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *
+ *      For any reuse or distribution, you must make clear to others the
+ *      license terms of this work.
+ */
+package com.moviejukebox.thetvdb.tools;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Limits the number of requests that are sent to each host.
+ * Every host has a bucket of tokens that fills up at the allowed rate, up to the size of a burst, and
+ * every request takes a token. A request that finds the bucket empty waits for the next token.
+ * Bulk requests only get a token when no other request is waiting for one, so a download of a whole
+ * series doesn't hold up the lookup of a single episode.
+ * The number of requests to each host and the time they had to wait are kept, see toString.
+ */
+public class RequestLimiter {
+
+    // How often a bulk request checks whether the other requests are done
+    private static final long BULK_RECHECK = 50L;
+
+    private double requestsPerSecond;
+    private int burst;
+    private Set<String> limitedHosts = new HashSet<String>();
+    private Map<String, Bucket> buckets = new HashMap<String, Bucket>();
+
+    /**
+     * @param requestsPerSecond The number of requests per second to each host, 0 or less for no limit
+     * @param burst The number of requests that can be sent at once after a quiet period
+     */
+    public RequestLimiter(double requestsPerSecond, int burst) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+    }
+
+    /**
+     * Set the limit of all hosts that don't have a limit of their own
+     * @param requestsPerSecond The number of requests per second, 0 or less for no limit
+     * @param burst
+     */
+    public synchronized void setLimit(double requestsPerSecond, int burst) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        for (Map.Entry<String, Bucket> bucket : buckets.entrySet()) {
+            if (!limitedHosts.contains(bucket.getKey())) {
+                bucket.getValue().setLimit(requestsPerSecond, burst);
+            }
+        }
+    }
+
+    /**
+     * Set the limit of a single host
+     * @param host
+     * @param requestsPerSecond The number of requests per second, 0 or less for no limit
+     * @param burst
+     */
+    public synchronized void setLimit(String host, double requestsPerSecond, int burst) {
+        limitedHosts.add(host);
+        getBucket(host).setLimit(requestsPerSecond, burst);
+    }
+
+    /**
+     * Wait until a request can be sent to the host
+     * @param host
+     * @param bulk True if the request is part of a larger download that can wait for the other requests
+     * @throws InterruptedIOException When the thread is interrupted while it waits
+     */
+    public void acquire(String host, boolean bulk) throws InterruptedIOException {
+        getBucket(host).acquire(bulk);
+    }
+
+    private synchronized Bucket getBucket(String host) {
+        Bucket bucket = buckets.get(host);
+        if (bucket == null) {
+            bucket = new Bucket(requestsPerSecond, burst);
+            buckets.put(host, bucket);
+        }
+        return bucket;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuffer limiter = new StringBuffer("[RequestLimiter ");
+        for (Map.Entry<String, Bucket> bucket : new TreeMap<String, Bucket>(buckets).entrySet()) {
+            limiter.append("[").append(bucket.getKey()).append("=").append(bucket.getValue()).append("]");
+        }
+        limiter.append("]");
+        return limiter.toString();
+    }
+
+    /**
+     * The current time, tests replace it together with await to check the waits without waiting
+     * @return
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Wait for the next token, or until the bucket is notified
+     * @param bucket The bucket that is locked by the caller
+     * @param milliseconds
+     * @throws InterruptedException
+     */
+    void await(Object bucket, long milliseconds) throws InterruptedException {
+        bucket.wait(milliseconds);
+    }
+
+    private class Bucket {
+        private double requestsPerSecond;
+        private int burst;
+        private double tokens;
+        private long lastRefill = now();
+        private int waitingRequests = 0;
+
+        private long requests = 0;
+        private long bulkRequests = 0;
+        private long delayedRequests = 0;
+        private long waitTime = 0;
+
+        private Bucket(double requestsPerSecond, int burst) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+        }
+
+        private synchronized void setLimit(double requestsPerSecond, int burst) {
+            refill();
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = Math.max(1, burst);
+            this.tokens = Math.min(this.tokens, this.burst);
+            // Wake the waiting requests, so they wait for the new rate instead
+            notifyAll();
+        }
+
+        private synchronized void acquire(boolean bulk) throws InterruptedIOException {
+            long start = now();
+            boolean delayed = false;
+            if (!bulk) {
+                waitingRequests++;
+            }
+            try {
+                while (requestsPerSecond > 0) {
+                    refill();
+                    if (tokens >= 1 && (!bulk || waitingRequests == 0)) {
+                        tokens--;
+                        break;
+                    }
+                    delayed = true;
+                    if (tokens >= 1) {
+                        await(this, BULK_RECHECK);
+                    } else {
+                        await(this, Math.max(1L, (long) Math.ceil((1 - tokens) * 1000 / requestsPerSecond)));
+                    }
+                }
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to send a request");
+            } finally {
+                if (!bulk) {
+                    waitingRequests--;
+                    notifyAll();
+                }
+            }
+
+            requests++;
+            if (bulk) {
+                bulkRequests++;
+            }
+            if (delayed) {
+                delayedRequests++;
+                waitTime += now() - start;
+            }
+        }
+
+        private void refill() {
+            long now = now();
+            if (requestsPerSecond > 0) {
+                tokens = Math.min(burst, tokens + (now - lastRefill) * requestsPerSecond / 1000);
+            }
+            lastRefill = now;
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuffer bucket = new StringBuffer();
+            bucket.append("[requests=").append(requests).append("]");
+            bucket.append("[bulk=").append(bulkRequests).append("]");
+            bucket.append("[delayed=").append(delayedRequests).append("]");
+            bucket.append("[waited=").append(waitTime).append("ms]");
+            return bucket.toString();
+        }
+    }
+}
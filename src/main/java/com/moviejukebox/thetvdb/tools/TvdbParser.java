@@ -12,18 +12,30 @@
  */
 package com.moviejukebox.thetvdb.tools;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 
 import com.moviejukebox.thetvdb.TheTVDB;
 import com.moviejukebox.thetvdb.model.Actor;
@@ -33,6 +45,8 @@ import com.moviejukebox.thetvdb.model.BannerType;
 import com.moviejukebox.thetvdb.model.Banners;
 import com.moviejukebox.thetvdb.model.Episode;
 import com.moviejukebox.thetvdb.model.Series;
+import com.moviejukebox.thetvdb.model.SeriesBundle;
+import com.moviejukebox.thetvdb.model.Updates;
 
 public class TvdbParser {
     private static Logger logger = TheTVDB.getLogger();
@@ -47,6 +61,13 @@ public class TvdbParser {
 
     private static final int MAX_EPISODE = 24;  // The anticipated largest episode number
     
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+    
     // Hide the constructor
     protected TvdbParser() {
         // prevents calls from subclass
@@ -59,19 +80,29 @@ public class TvdbParser {
      * @return
      */
     public static List<Actor> getActors(String urlString) {
-        List<Actor> results = new ArrayList<Actor>();
-        Actor actor = null;
         Document doc = null;
-        NodeList nlActor;
-        Node nActor;
-        Element eActor;
         
         try {
             doc = DOMHelper.getEventDocFromUrl(urlString);
         } catch (Throwable tw) {
-            return results;
+            return new ArrayList<Actor>();
         }
 
+        return parseActors(doc);
+    }
+    
+    /**
+     * Get a list of the actors from the document
+     * @param doc
+     * @return
+     */
+    private static List<Actor> parseActors(Document doc) {
+        List<Actor> results = new ArrayList<Actor>();
+        Actor actor = null;
+        NodeList nlActor;
+        Node nActor;
+        Element eActor;
+
         nlActor = doc.getElementsByTagName("Actor");
         
         for (int loop = 0; loop < nlActor.getLength(); loop++) {
@@ -84,7 +115,7 @@ public class TvdbParser {
                 actor.setId(DOMHelper.getValueFromElement(eActor, "id"));
                 String image = DOMHelper.getValueFromElement(eActor, "Image");
                 if (!image.isEmpty()) {
-                    actor.setImage(TheTVDB.getBannerMirror() + image);                    
+                    actor.setImage(image);
                 }
                 actor.setName(DOMHelper.getValueFromElement(eActor, "Name"));
                 actor.setRole(DOMHelper.getValueFromElement(eActor, "Role"));
@@ -100,69 +131,210 @@ public class TvdbParser {
     }
     
     /**
-     * Get all the episodes from the URL
+     * Get all the episodes from the URL.
+     * The feed is parsed while it is downloaded, so only the episodes that are returned are kept in memory.
+     * A feed that can't be read completely is tried again, the list is empty when all the tries failed.
      * @param urlString
      * @param season 
      * @return
      */
     public static List<Episode> getAllEpisodes(String urlString, int season) {
         List<Episode> episodeList = new ArrayList<Episode>();
-        Episode episode = null;
-        NodeList nlEpisode;
-        Node nEpisode;
-        Element eEpisode;
         
         try {
-            Document doc = DOMHelper.getEventDocFromUrl(urlString);
-            nlEpisode = doc.getElementsByTagName("Episode");
-            for (int loop = 0; loop < nlEpisode.getLength(); loop++) {
-                nEpisode = nlEpisode.item(loop);
-                if (nEpisode.getNodeType() == Node.ELEMENT_NODE) {
-                    eEpisode = (Element) nEpisode;
-                    episode = parseNextEpisode(eEpisode);
-                    if ((episode != null) &&  (season == -1 || episode.getSeasonNumber() == season)) {
-                        // Add the episode only if the season is -1 (all seasons) or matches the season
-                        episodeList.add(episode);
+            int retryCount = 0;
+            while (true) {
+                IOException failure;
+                try {
+                    if (streamEpisodes(urlString, season, episodeList)) {
+                        break;
+                    }
+                    failure = new IOException("The response doesn't have any IDs");
+                } catch (XMLStreamException error) {
+                    // Not a complete XML document, so treat it the same as one without IDs
+                    failure = new IOException("The response is not complete: " + error.getMessage(), error);
+                } catch (IOException error) {
+                    if (!DOMHelper.isRetryable(error)) {
+                        throw error;
                     }
+                    failure = error;
+                }
+                // Never keep the episodes of a failed try
+                episodeList.clear();
+                retryCount++;
+                if (retryCount >= DOMHelper.RETRY_COUNT) {
+                    throw new RuntimeException("Failed to download data from " + urlString, failure);
                 }
+                logger.fine("Try #" + retryCount + " for " + urlString + " failed: " + failure.getMessage());
+                DOMHelper.backOff(retryCount, failure);
             }
         } catch (Exception error) {
             logger.warning("All Episodes error: " + error.getMessage());
+            episodeList.clear();
         } catch (Throwable tw) {
             // Message is passed to us
             logger.warning(tw.getMessage());
+            episodeList.clear();
         }
         
         return episodeList;
     }
 
     /**
-     * Get a list of banners from the URL
+     * Read the episodes from the URL into the list
      * @param urlString
+     * @param season The season to read, or -1 for all seasons
+     * @param episodeList
+     * @return False if the response didn't contain any IDs, which means it should be retried
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    private static boolean streamEpisodes(String urlString, int season, List<Episode> episodeList) throws IOException, XMLStreamException {
+        InputStream in = null;
+        
+        try {
+            InputSource source = WebBrowser.requestSource(urlString);
+            in = source.getByteStream();
+            return readSeriesFeed(createReader(source), season, episodeList, null);
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+    
+    /**
+     * Create a stream reader for the response, using the encoding from the response header if it has one
+     * @param source
      * @return
+     * @throws XMLStreamException
      */
-    public static Banners getBanners(String urlString) {
-        Banners banners = new Banners();
-        Banner banner = null;
+    private static XMLStreamReader createReader(InputSource source) throws XMLStreamException {
+        if (source.getEncoding() == null) {
+            return XML_INPUT_FACTORY.createXMLStreamReader(source.getByteStream());
+        }
+        return XML_INPUT_FACTORY.createXMLStreamReader(source.getByteStream(), source.getEncoding());
+    }
+    
+    /**
+     * Read the series and its episodes from a full series feed, the underlying stream is not closed
+     * @param reader
+     * @param season The season to read, or -1 for all seasons
+     * @param episodeList
+     * @param seriesList The list to add the series to, or null if the series isn't needed
+     * @return False if the feed didn't contain any IDs
+     * @throws XMLStreamException
+     */
+    private static boolean readSeriesFeed(XMLStreamReader reader, int season, List<Episode> episodeList, List<Series> seriesList) throws XMLStreamException {
+        boolean valid = false;
         
-        NodeList nlBanners;
-        Node nBanner;
-        Element eBanner;
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                
+                if ("Episode".equals(reader.getLocalName())) {
+                    valid = true;
+                    Episode episode = parseNextEpisode(reader, season);
+                    if (episode != null) {
+                        episodeList.add(episode);
+                    }
+                } else if ("Series".equals(reader.getLocalName())) {
+                    Series series = parseNextSeries(reader);
+                    if (!series.getId().isEmpty()) {
+                        valid = true;
+                    }
+                    if (seriesList != null) {
+                        seriesList.add(series);
+                    }
+                } else if ("id".equals(reader.getLocalName()) && !reader.getElementText().isEmpty()) {
+                    valid = true;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        
+        return valid;
+    }
+    
+    /**
+     * Get everything about a series from the zip file at the URL.
+     * The entries are parsed straight from the download, without saving the zip file.
+     * @param urlString
+     * @param language The language of the episode and series information in the zip file
+     * @return The bundle, or null if any of the entries couldn't be read completely
+     */
+    public static SeriesBundle getSeriesBundle(String urlString, String language) {
+        SeriesBundle bundle = new SeriesBundle();
+        String seriesEntry = language + ".xml";
+        boolean seriesRead = false;
+        boolean bannersRead = false;
+        boolean actorsRead = false;
+        ZipInputStream zip = null;
         
         try {
-            Document doc = DOMHelper.getEventDocFromUrl(urlString);
-            
-            nlBanners = doc.getElementsByTagName("Banner");
-            for (int loop = 0; loop < nlBanners.getLength(); loop++) {
-                nBanner = nlBanners.item(loop);
-                if (nBanner.getNodeType() == Node.ELEMENT_NODE) {
-                    eBanner = (Element) nBanner;
-                    banner = parseNextBanner(eBanner);
-                    if (banner != null) {
-                        banners.addBanner(banner);
+            zip = new ZipInputStream(WebBrowser.requestStream(urlString));
+            // The parsers close the stream when they reach the end of the entry
+            InputStream entryStream = new NonClosingInputStream(zip);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (seriesEntry.equals(entry.getName())) {
+                    List<Series> seriesList = new ArrayList<Series>();
+                    seriesRead = readSeriesFeed(XML_INPUT_FACTORY.createXMLStreamReader(entryStream), -1, bundle.getEpisodes(), seriesList);
+                    if (seriesList.isEmpty()) {
+                        seriesRead = false;
+                    } else {
+                        bundle.setSeries(seriesList.get(0));
                     }
+                } else if ("banners.xml".equals(entry.getName())) {
+                    bundle.setBanners(parseBanners(DOMHelper.getEventDocFromStream(entryStream)));
+                    bannersRead = true;
+                } else if ("actors.xml".equals(entry.getName())) {
+                    bundle.setActors(parseActors(DOMHelper.getEventDocFromStream(entryStream)));
+                    actorsRead = true;
+                }
+                zip.closeEntry();
+            }
+        } catch (Exception error) {
+            logger.warning("Series zip error: " + error.getMessage());
+            return null;
+        } catch (Throwable tw) {
+            // Message is passed to us
+            logger.warning(tw.getMessage());
+            return null;
+        } finally {
+            if (zip != null) {
+                try {
+                    zip.close();
+                } catch (IOException error) {
+                    // Input Stream was already closed
+                    zip = null;
                 }
             }
+        }
+        
+        // A zip file that was cut off between two entries doesn't cause an error, so check that none are missing
+        if (!seriesRead || !bannersRead || !actorsRead) {
+            logger.warning("Series zip error: " + urlString + " is not complete");
+            return null;
+        }
+        
+        return bundle;
+    }
+
+    /**
+     * Get a list of banners from the URL
+     * @param urlString
+     * @return
+     */
+    public static Banners getBanners(String urlString) {
+        Banners banners = new Banners();
+        
+        try {
+            Document doc = DOMHelper.getEventDocFromUrl(urlString);
+            banners = parseBanners(doc);
         } catch (Exception error) {
             logger.warning("Banners error: " + error.getMessage());
         } catch (Throwable tw) {
@@ -172,6 +344,35 @@ public class TvdbParser {
         
         return banners;
     }
+    
+    /**
+     * Get a list of banners from the document
+     * @param doc
+     * @return
+     * @throws Throwable
+     */
+    private static Banners parseBanners(Document doc) throws Throwable {
+        Banners banners = new Banners();
+        Banner banner = null;
+        
+        NodeList nlBanners;
+        Node nBanner;
+        Element eBanner;
+        
+        nlBanners = doc.getElementsByTagName("Banner");
+        for (int loop = 0; loop < nlBanners.getLength(); loop++) {
+            nBanner = nlBanners.item(loop);
+            if (nBanner.getNodeType() == Node.ELEMENT_NODE) {
+                eBanner = (Element) nBanner;
+                banner = parseNextBanner(eBanner);
+                if (banner != null) {
+                    banners.addBanner(banner);
+                }
+            }
+        }
+        
+        return banners;
+    }
 
     /**
      * Get the episode information from the URL
@@ -244,6 +445,82 @@ public class TvdbParser {
         return seriesList;
     }
 
+    /**
+     * Get the series that changed after a time from one of the updates files.
+     * The updates files can be large, so they are read as a stream.
+     * @param urlString
+     * @param since The server time in seconds, changes made at or before this are ignored
+     * @return The updates, the time is 0 if the file couldn't be read
+     */
+    public static Updates getUpdates(String urlString, long since) {
+        Updates updates = new Updates();
+        InputStream in = null;
+        
+        try {
+            InputSource source = WebBrowser.requestSource(urlString);
+            in = source.getByteStream();
+            XMLStreamReader reader = createReader(source);
+            
+            try {
+                long time = 0;
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    
+                    String tagName = reader.getLocalName();
+                    if ("Data".equals(tagName)) {
+                        time = parseLong(reader.getAttributeValue(null, "time"));
+                    } else if ("Series".equals(tagName) || "Episode".equals(tagName) || "Banner".equals(tagName)) {
+                        Map<String, String> values = parseUpdateItem(reader);
+                        if (parseLong(values.get("time")) > since) {
+                            // Episodes and banners refer to their series with a Series tag
+                            updates.addSeriesId("Series".equals(tagName) ? values.get("id") : values.get("Series"));
+                        }
+                    }
+                }
+                updates.setTime(time);
+            } finally {
+                reader.close();
+            }
+        } catch (Exception error) {
+            logger.warning("Updates error: " + error.getMessage());
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException error) {
+                    // Input Stream was already closed
+                    in = null;
+                }
+            }
+        }
+        
+        return updates;
+    }
+
+    /**
+     * Read the values of an item in the updates file, the stream is left at the end of the item
+     * @param reader
+     * @return
+     * @throws XMLStreamException
+     */
+    private static Map<String, String> parseUpdateItem(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> values = new HashMap<String, String>();
+        
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                values.put(reader.getLocalName(), reader.getElementText().trim());
+            }
+        }
+        
+        return values;
+    }
+
     /**
      * Parse the error message to return a more user friendly message
      * @param errorMessage
@@ -317,23 +594,22 @@ public class TvdbParser {
      * @throws Throwable
      */
     private static Banner parseNextBanner(Element eBanner) throws Throwable {
-        String bannerMirror = TheTVDB.getBannerMirror();
         Banner banner = new Banner();
         String artwork;
         
         artwork = DOMHelper.getValueFromElement(eBanner, BANNER_PATH);
         if (!artwork.isEmpty()) {
-            banner.setUrl(bannerMirror + artwork);
+            banner.setUrl(artwork);
         }
         
         artwork = DOMHelper.getValueFromElement(eBanner, VIGNETTE_PATH);
         if (!artwork.isEmpty()) {
-            banner.setVignette(bannerMirror + artwork);
+            banner.setVignette(artwork);
         }
         
         artwork = DOMHelper.getValueFromElement(eBanner, THUMBNAIL_PATH);
         if (!artwork.isEmpty()) {
-            banner.setThumb(bannerMirror + artwork);
+            banner.setThumb(artwork);
         }
         
         banner.setId(DOMHelper.getValueFromElement(eBanner, "id"));
@@ -392,7 +668,7 @@ public class TvdbParser {
         episode.setAbsoluteNumber(DOMHelper.getValueFromElement(eEpisode, "absolute_number"));
         String s = DOMHelper.getValueFromElement(eEpisode, "filename");
         if (!s.isEmpty()) {
-            episode.setFilename(TheTVDB.getBannerMirror() + s);
+            episode.setFilename(s);
         }
         episode.setLastUpdated(DOMHelper.getValueFromElement(eEpisode, "lastupdated"));
         episode.setSeasonId(DOMHelper.getValueFromElement(eEpisode, "seasonid"));
@@ -419,6 +695,194 @@ public class TvdbParser {
         return episode;
     }
 
+    /**
+     * Parse the episode at the current position of the stream, the stream is left at the end of the episode.
+     * The rest of the episode is skipped as soon as the season number shows it isn't needed.
+     * @param reader
+     * @param season The season to parse, or -1 for all seasons
+     * @return The episode, or null if it belongs to a different season
+     * @throws XMLStreamException
+     */
+    private static Episode parseNextEpisode(XMLStreamReader reader, int season) throws XMLStreamException {
+        Episode episode = new Episode();
+        
+        // Fields that are missing from the feed are empty, the same as when they're read from the DOM
+        episode.setId("");
+        episode.setCombinedEpisodeNumber("");
+        episode.setCombinedSeason("");
+        episode.setDvdChapter("");
+        episode.setDvdDiscId("");
+        episode.setDvdEpisodeNumber("");
+        episode.setDvdSeason("");
+        episode.setEpImgFlag("");
+        episode.setEpisodeName("");
+        episode.setFirstAired("");
+        episode.setImdbId("");
+        episode.setLanguage("");
+        episode.setOverview("");
+        episode.setProductionCode("");
+        episode.setRating("");
+        episode.setAbsoluteNumber("");
+        episode.setLastUpdated("");
+        episode.setSeasonId("");
+        episode.setSeriesId("");
+        
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String tagName = reader.getLocalName();
+                String value = reader.getElementText();
+                setEpisodeValue(episode, tagName, value);
+                
+                if (season != -1 && "SeasonNumber".equals(tagName) && episode.getSeasonNumber() != season) {
+                    skipElement(reader);
+                    return null;
+                }
+            }
+        }
+        
+        return episode;
+    }
+    
+    /**
+     * Skip the rest of the current element without reading its content
+     * @param reader
+     * @throws XMLStreamException
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+    
+    /**
+     * Set a value read from the episode feed
+     * @param episode
+     * @param tagName
+     * @param value
+     */
+    private static void setEpisodeValue(Episode episode, String tagName, String value) {
+        if ("id".equals(tagName)) {
+            episode.setId(value);
+        } else if ("Combined_episodenumber".equals(tagName)) {
+            episode.setCombinedEpisodeNumber(value);
+        } else if ("Combined_season".equals(tagName)) {
+            episode.setCombinedSeason(value);
+        } else if ("DVD_chapter".equals(tagName)) {
+            episode.setDvdChapter(value);
+        } else if ("DVD_discid".equals(tagName)) {
+            episode.setDvdDiscId(value);
+        } else if ("DVD_episodenumber".equals(tagName)) {
+            episode.setDvdEpisodeNumber(value);
+        } else if ("DVD_season".equals(tagName)) {
+            episode.setDvdSeason(value);
+        } else if ("Director".equals(tagName)) {
+            episode.setDirectors(parseList(value, "|,"));
+        } else if ("EpImgFlag".equals(tagName)) {
+            episode.setEpImgFlag(value);
+        } else if ("EpisodeName".equals(tagName)) {
+            episode.setEpisodeName(value);
+        } else if ("EpisodeNumber".equals(tagName)) {
+            episode.setEpisodeNumber(parseInt(value));
+        } else if ("FirstAired".equals(tagName)) {
+            episode.setFirstAired(value);
+        } else if ("GuestStars".equals(tagName)) {
+            episode.setGuestStars(parseList(value, "|,"));
+        } else if ("IMDB_ID".equals(tagName)) {
+            episode.setImdbId(value);
+        } else if ("Language".equals(tagName)) {
+            episode.setLanguage(value);
+        } else if ("Overview".equals(tagName)) {
+            episode.setOverview(value);
+        } else if ("ProductionCode".equals(tagName)) {
+            episode.setProductionCode(value);
+        } else if ("Rating".equals(tagName)) {
+            episode.setRating(value);
+        } else if ("SeasonNumber".equals(tagName)) {
+            episode.setSeasonNumber(parseInt(value));
+        } else if ("Writer".equals(tagName)) {
+            episode.setWriters(parseList(value, "|,"));
+        } else if ("absolute_number".equals(tagName)) {
+            episode.setAbsoluteNumber(value);
+        } else if ("filename".equals(tagName)) {
+            if (!value.isEmpty()) {
+                episode.setFilename(value);
+            }
+        } else if ("lastupdated".equals(tagName)) {
+            episode.setLastUpdated(value);
+        } else if ("seasonid".equals(tagName)) {
+            episode.setSeasonId(value);
+        } else if ("seriesid".equals(tagName)) {
+            episode.setSeriesId(value);
+        } else if ("airsafter_season".equals(tagName)) {
+            episode.setAirsAfterSeason(parseInt(value));
+        } else if ("airsbefore_episode".equals(tagName)) {
+            episode.setAirsBeforeEpisode(parseInt(value));
+        } else if ("airsbefore_season".equals(tagName)) {
+            episode.setAirsBeforeSeason(parseInt(value));
+        }
+    }
+    
+    /**
+     * Parse a number, missing or invalid numbers are 0
+     * @param value
+     * @return
+     */
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (Exception ignore) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parse a number, missing or invalid numbers are 0
+     * @param value
+     * @return
+     */
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (Exception ignore) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parse the series at the current position of the stream, the stream is left at the end of the series.
+     * The fields are copied into a small DOM element, so the series is read the same way as from a document.
+     * @param reader
+     * @return
+     * @throws XMLStreamException
+     */
+    private static Series parseNextSeries(XMLStreamReader reader) throws XMLStreamException {
+        Document doc = DOMHelper.createDocument();
+        Element eSeries = doc.createElement("Series");
+        doc.appendChild(eSeries);
+        
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                DOMHelper.appendChild(doc, eSeries, reader.getLocalName(), reader.getElementText());
+            }
+        }
+        
+        return parseNextSeries(eSeries);
+    }
+
     /**
      * Parse the series record from the document
      * @param eSeries
@@ -426,8 +890,6 @@ public class TvdbParser {
      * @throws Throwable
      */
     private static Series parseNextSeries(Element eSeries) {
-        String bannerMirror = TheTVDB.getBannerMirror();
-        
         Series series = new Series();
         
         series.setId(DOMHelper.getValueFromElement(eSeries, "id"));
@@ -449,17 +911,17 @@ public class TvdbParser {
         
         String artwork = DOMHelper.getValueFromElement(eSeries, TYPE_BANNER);
         if (!artwork.isEmpty()) {
-            series.setBanner(bannerMirror + artwork);
+            series.setBanner(artwork);
         }
         
         artwork = DOMHelper.getValueFromElement(eSeries, TYPE_FANART);
         if (!artwork.isEmpty()) {
-            series.setFanart(bannerMirror + artwork);
+            series.setFanart(artwork);
         }
         
         artwork = DOMHelper.getValueFromElement(eSeries, TYPE_POSTER);
         if (!artwork.isEmpty()) {
-            series.setPoster(bannerMirror + artwork);
+            series.setPoster(artwork);
         }
                 
         series.setLastUpdated(DOMHelper.getValueFromElement(eSeries, "lastupdated"));
@@ -12,22 +12,39 @@
  */
 package com.moviejukebox.thetvdb.tools;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringWriter;
+import java.io.Reader;
+import java.io.SequenceInputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.xml.sax.InputSource;
 
 import com.moviejukebox.thetvdb.TheTVDB;
+import com.moviejukebox.thetvdb.cache.CacheType;
+import com.moviejukebox.thetvdb.cache.CachedResponse;
+import com.moviejukebox.thetvdb.cache.TvdbCache;
+import com.moviejukebox.thetvdb.model.Mirrors;
 
 /**
- * Web browser with simple cookies support
+ * Web browser with simple cookies support.
+ * Connections are kept alive and reused for the next request to the same host, so the streams must always be closed.
  */
 public final class WebBrowser {
     private static Logger logger = TheTVDB.getLogger();
@@ -41,6 +58,21 @@ public final class WebBrowser {
     private static String proxyEncodedPassword = null;
     private static int webTimeoutConnect = 25000;   // 25 second timeout
     private static int webTimeoutRead = 90000;      // 90 second timeout
+    private static TvdbCache responseCache = null;
+    private static Mirrors mirrors = null;
+    private static RequestLimiter limiter = new RequestLimiter(10, 10);
+    private static CircuitBreaker circuitBreaker = new CircuitBreaker();
+    // Java reads the connection settings when the first connection is opened
+    private static volatile boolean connectionOpened = false;
+
+    private static final String GZIP = "gzip";
+    // Larger responses are streamed to the parser and only stored on disk, so they don't fill the memory
+    private static final int MAX_STORED_RESPONSE = 32 * 1024;
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    // changed 'charset' to 'harset' in regexp because some sites send 'Charset'
+    private static final Pattern CHARSET_PATTERN = Pattern.compile("harset *=[ '\"]*([^ ;'\"]+)[ ;'\"]*");
+    // The requests for all episodes of a series, its zip file, banners and actors are sent after the other requests
+    private static final Pattern BULK_PATTERN = Pattern.compile("/all/|/banners\\.xml$|/actors\\.xml$|/banners/");
 
     static {
         browserProperties.put("User-Agent", "Mozilla/5.25 Netscape/5.0 (Windows; I; Win95)");
@@ -64,7 +96,10 @@ public final class WebBrowser {
             System.getProperties().put("proxyPort", proxyPort);
         }
         
+        connectionOpened = true;
         URLConnection cnx = url.openConnection();
+        cnx.setConnectTimeout(webTimeoutConnect);
+        cnx.setReadTimeout(webTimeoutRead);
         
         if (proxyUsername != null) {
             cnx.setRequestProperty("Proxy-Authorization", proxyEncodedPassword);
@@ -73,43 +108,383 @@ public final class WebBrowser {
         return cnx;
     }
 
+    /**
+     * Read the whole response from the URL as a string, decoded with the charset from the Content-Type.
+     * XML responses should be read with requestSource instead, so the parser gets the bytes directly.
+     * @param url
+     * @return
+     * @throws IOException
+     */
     public static String request(URL url) throws IOException {
-        StringWriter content = null;
+        Response response = sendRequest(url, true);
+        Reader in = null;
 
         try {
-            content = new StringWriter();
+            in = new InputStreamReader(response.in, getCharset(response.cnx, DEFAULT_CHARSET));
+            StringBuilder content = new StringBuilder();
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                content.append(buffer, 0, count);
+            }
+            return content.toString();
+        } finally {
+            // Closing the stream hands the connection back to be reused
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
 
-            BufferedReader in = null;
-            URLConnection cnx = null;
-            try {
-                cnx = openProxiedConnection(url);
+    /**
+     * Open the response from the URL for an XML parser.
+     * The parser reads the bytes straight from the connection, the encoding is only set when the
+     * Content-Type declares one, otherwise the parser takes it from the XML declaration.
+     * The caller must close the byte stream of the source.
+     * @param url
+     * @return
+     * @throws IOException
+     */
+    public static InputSource requestSource(String url) throws IOException {
+        Response response = sendRequest(new URL(url), true);
+        InputSource source = new InputSource(response.in);
+        source.setSystemId(url);
+
+        Charset charset = getCharset(response.cnx, null);
+        if (charset != null) {
+            source.setEncoding(charset.name());
+        }
+        return source;
+    }
+
+    /**
+     * Open the response from the URL as a stream, so it can be parsed without holding all of it in memory.
+     * Compressed responses are decompressed. Closing the stream hands the connection back to be reused.
+     * @param url
+     * @return
+     * @throws IOException
+     */
+    public static InputStream requestStream(String url) throws IOException {
+        return requestStream(new URL(url));
+    }
 
-                sendHeader(cnx);
-                readHeader(cnx);
+    public static InputStream requestStream(URL url) throws IOException {
+        return sendRequest(url, false).in;
+    }
 
-                //in = new BufferedReader(new InputStreamReader(cnx.getInputStream(), getCharset(cnx)));
-                in = new BufferedReader(new InputStreamReader(cnx.getInputStream(), "UTF-8"));
-                String line;
-                while ((line = in.readLine()) != null) {
-                    content.write(line);
+    /**
+     * Send the request and open the response.
+     * Requests to one of the mirrors are timed to keep track of the health of the mirror. When the
+     * mirror doesn't answer, or answers with a server error, the request is sent to the next healthy
+     * mirror until one of them answers.
+     * Every request waits for the request limiter of its host first.
+     * The requests to a host that doesn't answer, or only answers with server errors, are stopped for a while,
+     * so they go to the next mirror right away or fail without waiting for a timeout.
+     * @param url
+     * @param text True to ask for a compressed response, the images and zips are compressed already
+     * @return
+     * @throws IOException
+     */
+    private static Response sendRequest(URL url, boolean text) throws IOException {
+        Mirrors currentMirrors = mirrors;
+        String mirror = (currentMirrors == null) ? null : currentMirrors.findMirror(url.toString());
+        boolean bulk = isBulk(url.getPath());
+        if (mirror == null) {
+            String host = url.getHost();
+            circuitBreaker.check(host);
+            limiter.acquire(host, bulk);
+            URLConnection cnx = openConnection(url, text);
+            CachedResponse cached = getCachedResponse(cnx);
+            InputStream in;
+            try {
+                in = openStream(cnx);
+            } catch (IOException error) {
+                if (isMirrorFailure(cnx)) {
+                    circuitBreaker.recordFailure(host);
+                } else {
+                    circuitBreaker.recordSuccess(host);
                 }
-            } finally {
-                if (in != null) {
-                    in.close();
+                throw error;
+            }
+            circuitBreaker.recordSuccess(host);
+            return new Response(cnx, readResponse(cnx, in, cached));
+        }
+
+        String path = url.toString().substring(mirror.length());
+        List<String> failedMirrors = new ArrayList<String>();
+        while (true) {
+            URL mirrorUrl = new URL(mirror + path);
+            String host = mirrorUrl.getHost();
+            try {
+                circuitBreaker.check(host);
+            } catch (HostUnavailableException error) {
+                mirror = nextMirror(currentMirrors, mirror, path, failedMirrors, error);
+                continue;
+            }
+            limiter.acquire(host, bulk);
+            URLConnection cnx = openConnection(mirrorUrl, text);
+            CachedResponse cached = getCachedResponse(cnx);
+            long start = System.currentTimeMillis();
+            InputStream in;
+            try {
+                in = openStream(cnx);
+            } catch (IOException error) {
+                if (!isMirrorFailure(cnx)) {
+                    // The mirror answered, the request itself is wrong
+                    currentMirrors.recordSuccess(mirror, System.currentTimeMillis() - start);
+                    circuitBreaker.recordSuccess(host);
+                    throw error;
                 }
+                currentMirrors.recordFailure(mirror);
+                circuitBreaker.recordFailure(host);
+                mirror = nextMirror(currentMirrors, mirror, path, failedMirrors, error);
+                continue;
+            }
+            // Only the time until the mirror answered, the time to download the body depends on its size
+            currentMirrors.recordSuccess(mirror, System.currentTimeMillis() - start);
+            circuitBreaker.recordSuccess(host);
+            return new Response(cnx, readResponse(cnx, in, cached));
+        }
+    }
 
-                if (cnx != null) {
-                    if(cnx instanceof HttpURLConnection) {
-                        ((HttpURLConnection)cnx).disconnect();
-                    } else {
-                        logger.warning("Warning: Connection not closed!");
+    private static URLConnection openConnection(URL url, boolean text) throws IOException {
+        URLConnection cnx = openProxiedConnection(url);
+        if (text) {
+            cnx.setRequestProperty("Accept-Encoding", GZIP);
+        }
+        return cnx;
+    }
+
+    /**
+     * Get the next healthy mirror to send the request to after a mirror failed
+     * @param currentMirrors
+     * @param mirror The mirror that failed
+     * @param path
+     * @param failedMirrors The mirrors that already failed for this request
+     * @param error Why the mirror failed
+     * @return
+     * @throws IOException The error of the mirror, when there is no other mirror left
+     */
+    private static String nextMirror(Mirrors currentMirrors, String mirror, String path, List<String> failedMirrors,
+            IOException error) throws IOException {
+        failedMirrors.add(mirror);
+        String alternative = currentMirrors.getAlternative(path, failedMirrors);
+        if (alternative == null) {
+            throw error;
+        }
+        logger.fine("The mirror " + mirror + " failed (" + error.getMessage() + "), trying " + alternative);
+        return alternative;
+    }
+
+    /**
+     * @param path
+     * @return true if the request downloads a lot at once and can wait for the other requests
+     */
+    private static boolean isBulk(String path) {
+        return BULK_PATTERN.matcher(path).find();
+    }
+
+    /**
+     * @param cnx the connection of a request that failed
+     * @return true if the server didn't answer or had an error of its own
+     */
+    private static boolean isMirrorFailure(URLConnection cnx) {
+        if (!(cnx instanceof HttpURLConnection)) {
+            return true;
+        }
+        try {
+            return ((HttpURLConnection) cnx).getResponseCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        } catch (IOException noResponse) {
+            return true;
+        }
+    }
+
+    /**
+     * Get the stored response of the request, and ask the server to only send the body if it has changed since
+     * @param cnx
+     * @return The stored response, or null if there isn't one
+     */
+    private static CachedResponse getCachedResponse(URLConnection cnx) {
+        TvdbCache cache = responseCache;
+        if (cache == null) {
+            return null;
+        }
+
+        CachedResponse cached = (CachedResponse) cache.get(CacheType.RESPONSE, getResponseKey(cnx.getURL()));
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                cnx.setRequestProperty("If-None-Match", cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                cnx.setRequestProperty("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Send the request and wait for the server to answer, the body isn't read yet
+     * @param cnx
+     * @return
+     * @throws IOException
+     */
+    private static InputStream openStream(URLConnection cnx) throws IOException {
+        sendHeader(cnx);
+
+        try {
+            readHeader(cnx);
+            return cnx.getInputStream();
+        } catch (IOException error) {
+            discardErrorStream(cnx);
+            throw getStatusError(cnx, error);
+        }
+    }
+
+    /**
+     * Get the body of the response.
+     * When the server answered that it hasn't changed, the stored body is used. A new body is stored when the server
+     * sent an ETag or Last-Modified header with it. Larger bodies, like the full series feeds and zips, are only
+     * stored on disk while they're streamed.
+     * @param cnx
+     * @param in The stream of the response
+     * @param cached The stored response that was sent with the request, or null
+     * @return
+     * @throws IOException
+     */
+    private static InputStream readResponse(URLConnection cnx, InputStream in, CachedResponse cached) throws IOException {
+        TvdbCache cache = responseCache;
+        String key = getResponseKey(cnx.getURL());
+
+        if (cached != null && isNotModified(cnx)) {
+            in.close();
+            if (cached.getBody() == null) {
+                // Not stored again, that would copy the whole body, so it's downloaded again when it expires
+                InputStream body = (cache == null) ? null : cache.getBody(CacheType.RESPONSE, key);
+                if (body == null) {
+                    if (cache != null) {
+                        cache.remove(CacheType.RESPONSE, key);
                     }
+                    throw new IOException("The stored response for " + key + " is no longer available");
                 }
+                return body;
             }
-            return content.toString();
+            if (cache != null) {
+                // Store it again so it is kept for another full time to live
+                cache.put(CacheType.RESPONSE, key, cached);
+            }
+            return new ByteArrayInputStream(cached.getBody());
+        }
+
+        if (GZIP.equalsIgnoreCase(cnx.getContentEncoding())) {
+            in = new GZIPInputStream(in);
+        }
+
+        String etag = cnx.getHeaderField("ETag");
+        String lastModified = cnx.getHeaderField("Last-Modified");
+        if (cache == null || (etag == null && lastModified == null)) {
+            return in;
+        }
+
+        // The body is needed to answer the next request if it hasn't changed
+        byte[] body = readUpTo(in, MAX_STORED_RESPONSE + 1);
+        if (body.length > MAX_STORED_RESPONSE) {
+            // Too large to keep in memory, so it's written to disk while the rest of the stream is read
+            return cache.put(CacheType.RESPONSE, key, new CachedResponse(etag, lastModified, null),
+                    new SequenceInputStream(new ByteArrayInputStream(body), in));
+        }
+        in.close();
+        cache.put(CacheType.RESPONSE, key, new CachedResponse(etag, lastModified, body));
+        return new ByteArrayInputStream(body);
+    }
+
+    /**
+     * Add the status code to the error of a request that the server answered
+     * @param cnx
+     * @param error
+     * @return The HttpStatusException, or the error itself if the server didn't answer
+     */
+    private static IOException getStatusError(URLConnection cnx, IOException error) {
+        if (!(cnx instanceof HttpURLConnection)) {
+            return error;
+        }
+        int statusCode;
+        try {
+            statusCode = ((HttpURLConnection) cnx).getResponseCode();
+        } catch (IOException noResponse) {
+            return error;
+        }
+        if (statusCode < HttpURLConnection.HTTP_BAD_REQUEST) {
+            return error;
+        }
+        long retryAfter = 0;
+        String retryAfterHeader = cnx.getHeaderField("Retry-After");
+        if (retryAfterHeader != null) {
+            try {
+                retryAfter = Long.parseLong(retryAfterHeader.trim()) * 1000L;
+            } catch (NumberFormatException httpDate) {
+                // Only the number of seconds is used
+            }
+        }
+        return new HttpStatusException(error.getMessage(), statusCode, retryAfter, error);
+    }
+
+    /**
+     * Create the key the response is stored under.
+     * The host and the API key are left out, so the same response is found whichever mirror and key are used.
+     * @param url
+     * @return
+     */
+    private static String getResponseKey(URL url) {
+        return TheTVDB.getCacheKey(url.getFile());
+    }
+
+    private static boolean isNotModified(URLConnection cnx) throws IOException {
+        return (cnx instanceof HttpURLConnection) && ((HttpURLConnection) cnx).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Read the stream until it ends or the limit is reached, the stream is left open
+     * @param in
+     * @param limit The largest number of bytes to read
+     * @return
+     * @throws IOException
+     */
+    private static byte[] readUpTo(InputStream in, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while (out.size() < limit && (count = in.read(buffer, 0, Math.min(buffer.length, limit - out.size()))) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Read the rest of an error response, so the connection can still be reused
+     * @param cnx
+     */
+    private static void discardErrorStream(URLConnection cnx) {
+        if (!(cnx instanceof HttpURLConnection)) {
+            return;
+        }
+
+        InputStream error = ((HttpURLConnection) cnx).getErrorStream();
+        if (error == null) {
+            return;
+        }
+
+        try {
+            byte[] buffer = new byte[1024];
+            while (error.read(buffer) != -1) {
+                // Discard
+            }
+        } catch (IOException ignore) {
+            // The connection won't be reused
         } finally {
-            if (content != null) {
-                content.close();
+            try {
+                error.close();
+            } catch (IOException ignore) {
+                // Already closed
             }
         }
     }
@@ -129,13 +504,15 @@ public final class WebBrowser {
     private static String createCookieHeader(URLConnection cnx) {
         String host = cnx.getURL().getHost();
         StringBuilder cookiesHeader = new StringBuilder();
-        for (Map.Entry<String, Map<String, String>> domainCookies : cookies.entrySet()) {
-            if (host.endsWith(domainCookies.getKey())) {
-                for (Map.Entry<String, String> cookie : domainCookies.getValue().entrySet()) {
-                    cookiesHeader.append(cookie.getKey());
-                    cookiesHeader.append("=");
-                    cookiesHeader.append(cookie.getValue());
-                    cookiesHeader.append(";");
+        synchronized (cookies) {
+            for (Map.Entry<String, Map<String, String>> domainCookies : cookies.entrySet()) {
+                if (host.endsWith(domainCookies.getKey())) {
+                    for (Map.Entry<String, String> cookie : domainCookies.getValue().entrySet()) {
+                        cookiesHeader.append(cookie.getKey());
+                        cookiesHeader.append("=");
+                        cookiesHeader.append(cookie.getValue());
+                        cookiesHeader.append(";");
+                    }
                 }
             }
         }
@@ -169,44 +546,51 @@ public final class WebBrowser {
                             // if domain isn't set take current host
                             cookieDomain = cnx.getURL().getHost();
                         }
-                        Map<String, String> domainCookies = cookies.get(cookieDomain);
-                        if (domainCookies == null) {
-                            domainCookies = new HashMap<String, String>();
-                            cookies.put(cookieDomain, domainCookies);
+                        // the cookies are shared by all the threads making requests
+                        synchronized (cookies) {
+                            Map<String, String> domainCookies = cookies.get(cookieDomain);
+                            if (domainCookies == null) {
+                                domainCookies = new HashMap<String, String>();
+                                cookies.put(cookieDomain, domainCookies);
+                            }
+                            // add or replace cookie
+                            domainCookies.put(cookieName, cookieValue);
                         }
-                        // add or replace cookie
-                        domainCookies.put(cookieName, cookieValue);
                     }
                 }
             }
         }
     }
 
-/*
-    @SuppressWarnings("unused")
-    private static Charset getCharset(URLConnection cnx) {
+    /**
+     * Get the charset declared in the Content-Type of the response
+     * @param cnx
+     * @param defaultCharset Returned when the response doesn't declare a charset that is supported
+     * @return
+     */
+    private static Charset getCharset(URLConnection cnx, Charset defaultCharset) {
         Charset charset = null;
         // content type will be string like "text/html; charset=UTF-8" or "text/html"
         String contentType = cnx.getContentType();
         if (contentType != null) {
-            // changed 'charset' to 'harset' in regexp because some sites send 'Charset'
-            Matcher m = Pattern.compile("harset *=[ '\"]*([^ ;'\"]+)[ ;'\"]*").matcher(contentType);
+            Matcher m = CHARSET_PATTERN.matcher(contentType);
             if (m.find()) {
                 String encoding = m.group(1);
                 try {
                     charset = Charset.forName(encoding);
                 } catch (UnsupportedCharsetException e) {
                     // there will be used default charset
+                } catch (IllegalCharsetNameException e) {
+                    // there will be used default charset
                 }
             }
         }
         if (charset == null) {
-            charset = Charset.defaultCharset();
+            charset = defaultCharset;
         }
         
         return charset;
     }
-*/
     
     public static String getProxyHost() {
         return proxyHost;
@@ -260,4 +644,81 @@ public final class WebBrowser {
     public static void setWebTimeoutRead(int webTimeoutRead) {
         WebBrowser.webTimeoutRead = webTimeoutRead;
     }
+
+    /**
+     * Set the mirrors whose health is tracked, requests to a mirror that fails are sent to another one
+     * @param tvdbMirrors
+     */
+    public static void setMirrors(Mirrors tvdbMirrors) {
+        mirrors = tvdbMirrors;
+    }
+
+    /**
+     * Set the number of requests per second that are sent to each host
+     * @param requestsPerSecond The number of requests per second, 0 or less for no limit
+     * @param burst The number of requests that can be sent at once after a quiet period
+     */
+    public static void setRateLimit(double requestsPerSecond, int burst) {
+        limiter.setLimit(requestsPerSecond, burst);
+    }
+
+    /**
+     * Set the number of requests per second that are sent to a single host
+     * @param host
+     * @param requestsPerSecond The number of requests per second, 0 or less for no limit
+     * @param burst The number of requests that can be sent at once after a quiet period
+     */
+    public static void setRateLimit(String host, double requestsPerSecond, int burst) {
+        limiter.setLimit(host, requestsPerSecond, burst);
+    }
+
+    /**
+     * @return the number of requests to each host and how long they had to wait
+     */
+    public static String getRequestStatistics() {
+        return limiter.toString();
+    }
+
+    /**
+     * Set the cache used to store the bodies of responses that the server sent an ETag or Last-Modified for.
+     * Later requests for the same URL are made conditional, so an unchanged response isn't downloaded again.
+     * @param cache The cache, or null to always download the whole response
+     */
+    public static void setResponseCache(TvdbCache cache) {
+        WebBrowser.responseCache = cache;
+    }
+
+    /**
+     * Set the number of idle connections that are kept open for each host.
+     * This sets the http.keepAlive and http.maxConnections system properties, so it applies to every HTTP connection
+     * of the Java process. Java only reads them when the first connection is opened, so this has to be set before
+     * the first request is made and is ignored afterwards.
+     * @param maxConnections
+     */
+    public static void setMaxConnections(int maxConnections) {
+        if (connectionOpened) {
+            logger.warning("The number of connections can only be set before the first request, it stays at "
+                    + getMaxConnections());
+            return;
+        }
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(maxConnections));
+    }
+
+    public static int getMaxConnections() {
+        return Integer.getInteger("http.maxConnections", 5);
+    }
+
+    /**
+     * A connection with its response opened
+     */
+    private static class Response {
+        private final URLConnection cnx;
+        private final InputStream in;
+
+        private Response(URLConnection cnx, InputStream in) {
+            this.cnx = cnx;
+            this.in = in;
+        }
+    }
 }
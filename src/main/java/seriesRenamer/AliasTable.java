@@ -0,0 +1,92 @@
+package seriesRenamer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The aliases from an alias file, with their regular expressions compiled. The table doesn't change after it's been
+ * loaded, it's replaced by a new one when the file is changed.
+ */
+class AliasTable {
+    static final AliasTable EMPTY = new AliasTable(null, 0L, new ArrayList<Pattern>(), new ArrayList<String>());
+
+    private final File aliasFile;
+    private final long lastModified;
+    private final List<Pattern> patterns;
+    private final List<String> aliases;
+
+    private AliasTable(File aliasFile, long lastModified, List<Pattern> patterns, List<String> aliases) {
+	this.aliasFile = aliasFile;
+	this.lastModified = lastModified;
+	this.patterns = Collections.unmodifiableList(patterns);
+	this.aliases = Collections.unmodifiableList(aliases);
+    }
+
+    /**
+     * Read the aliases from the file. Lines starting with # are comments, the other lines contain a regex and the
+     * alias that replaces it, separated by the first = character.
+     *
+     * @param invalidLines
+     *            the lines that could not be used are added to this list
+     * @return the aliases, or an empty table if the file doesn't exist
+     */
+    static AliasTable load(File aliasFile, List<String> invalidLines) throws IOException {
+	if (!aliasFile.exists()) {
+	    return EMPTY;
+	}
+	long lastModified = aliasFile.lastModified();
+	List<Pattern> patterns = new ArrayList<Pattern>();
+	List<String> aliases = new ArrayList<String>();
+	BufferedReader reader = new BufferedReader(new FileReader(aliasFile));
+	try {
+	    String curLine = reader.readLine();
+	    while (curLine != null) {
+		if (!curLine.startsWith("#") && !curLine.trim().isEmpty()) {
+		    String[] line = curLine.split("=", 2);
+		    try {
+			if (line.length < 2) {
+			    invalidLines.add(curLine);
+			} else {
+			    patterns.add(Pattern.compile("(?i)" + line[0]));
+			    aliases.add(line[1]);
+			}
+		    } catch (PatternSyntaxException invalidRegex) {
+			invalidLines.add(curLine);
+		    }
+		}
+		curLine = reader.readLine();
+	    }
+	} finally {
+	    reader.close();
+	}
+	return new AliasTable(aliasFile, lastModified, patterns, aliases);
+    }
+
+    /**
+     * @return true if the file has been changed, created or removed since the table was loaded
+     */
+    boolean isStale(File file) {
+	if (aliasFile == null) {
+	    return file.exists();
+	}
+	return !file.exists() || file.lastModified() != lastModified;
+    }
+
+    /**
+     * Replace the first match of every alias in the name, in the order of the file
+     */
+    String apply(String name) {
+	String changedName = name;
+	for (int i = 0; i < patterns.size(); i++) {
+	    changedName = patterns.get(i).matcher(changedName).replaceFirst(aliases.get(i));
+	}
+	return changedName;
+    }
+}
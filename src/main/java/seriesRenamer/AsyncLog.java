@@ -0,0 +1,210 @@
+package seriesRenamer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the log messages to the log file on a background thread, so logging doesn't wait for the disk. The messages
+ * are queued in memory and written in batches to a file that stays open. When the file grows beyond the maximum size
+ * it's renamed to seriesRenamer.log.1 (the older ones to .2, .3, ...) and a new file is started. The queue is written
+ * out completely when the log is closed, which also happens when the program exits.
+ */
+class AsyncLog {
+    private static final Object CLOSE = new Object();
+    private static final int QUEUE_SIZE = 10000;
+    // How long a message waits for room in the queue before it's written to the console instead
+    private static final long QUEUE_WAIT = 1000L;
+
+    private final File logFile;
+    private final long maxSize;
+    private final int backups;
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+    private final Thread writerThread;
+    private BufferedWriter logWriter = null;
+    private boolean closed = false;
+
+    /**
+     * @param maxSize
+     *            the size in bytes at which the log file is rotated
+     * @param backups
+     *            the number of rotated log files that are kept
+     */
+    AsyncLog(File logFile, long maxSize, int backups) {
+	this.logFile = logFile;
+	this.maxSize = maxSize;
+	this.backups = backups;
+	writerThread = new Thread(new Runnable() {
+	    public void run() {
+		writeMessages();
+	    }
+	}, "SeriesRenamer log writer");
+	writerThread.setDaemon(true);
+	writerThread.start();
+	Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+	    public void run() {
+		close();
+	    }
+	}));
+    }
+
+    /**
+     * Queue the message to be written. This only waits when the writer is too far behind, when it stays behind or has
+     * stopped the message is written to the console instead.
+     */
+    void write(String message) {
+	synchronized (this) {
+	    // Checked while queueing, so the close can't come in between and leave the message behind the end
+	    if (closed) {
+		return;
+	    }
+	    if (enqueue(message)) {
+		return;
+	    }
+	}
+	System.err.println(message);
+    }
+
+    /**
+     * Write the queued messages and close the log file. Messages that are written after this are ignored.
+     */
+    void close() {
+	synchronized (this) {
+	    if (closed) {
+		return;
+	    }
+	    closed = true;
+	    if (!enqueue(CLOSE)) {
+		// The queue stays full, so the writer stops after writing what's queued
+		writerThread.interrupt();
+	    }
+	}
+	try {
+	    writerThread.join();
+	} catch (InterruptedException interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /**
+     * @return false if the writer has stopped or the queue stayed full
+     */
+    private boolean enqueue(Object message) {
+	try {
+	    return writerThread.isAlive() && queue.offer(message, QUEUE_WAIT, TimeUnit.MILLISECONDS);
+	} catch (InterruptedException interrupted) {
+	    Thread.currentThread().interrupt();
+	    return false;
+	}
+    }
+
+    private void writeMessages() {
+	List<Object> batch = new ArrayList<Object>();
+	try {
+	    while (true) {
+		batch.add(queue.take());
+		queue.drainTo(batch);
+		if (!writeBatch(batch)) {
+		    return;
+		}
+	    }
+	} catch (InterruptedException interrupted) {
+	    queue.drainTo(batch);
+	    writeBatch(batch);
+	}
+	closeWriter();
+    }
+
+    /**
+     * @return false if the batch ended with the close, the log file is closed then
+     */
+    private boolean writeBatch(List<Object> batch) {
+	for (Object message : batch) {
+	    if (message == CLOSE) {
+		closeWriter();
+		return false;
+	    }
+	    writeMessage((String) message);
+	}
+	batch.clear();
+	flush();
+	return true;
+    }
+
+    private void writeMessage(String message) {
+	try {
+	    if (logWriter == null) {
+		openWriter();
+	    }
+	    logWriter.newLine();
+	    logWriter.write(message);
+	} catch (IOException logWriteIO) {
+	    System.err.println("ERROR:\nThe log message could not be written to the log " + logFile.getPath());
+	    logWriteIO.printStackTrace();
+	    closeWriter();
+	}
+    }
+
+    private void flush() {
+	if (logWriter == null) {
+	    return;
+	}
+	try {
+	    logWriter.flush();
+	    if (logFile.length() > maxSize) {
+		closeWriter();
+		rotate();
+	    }
+	} catch (IOException logWriteIO) {
+	    System.err.println("ERROR:\nThe log messages could not be written to the log " + logFile.getPath());
+	    logWriteIO.printStackTrace();
+	    closeWriter();
+	}
+    }
+
+    private void openWriter() throws IOException {
+	File logDir = logFile.getAbsoluteFile().getParentFile();
+	if (!logDir.exists() && !logDir.mkdirs()) {
+	    System.err.println("ERROR:\nThe directory for the log file " + logFile.getPath() + " could not be created");
+	}
+	logWriter = new BufferedWriter(new FileWriter(logFile, true));
+    }
+
+    private void closeWriter() {
+	if (logWriter == null) {
+	    return;
+	}
+	try {
+	    logWriter.close();
+	} catch (IOException e) {
+	    System.err.println("ERROR:\nThe writer for the log file " + logFile.getPath() + " could not be closed");
+	    e.printStackTrace();
+	}
+	logWriter = null;
+    }
+
+    /**
+     * Move the log file to .1 and the existing backups up by one, the oldest backup is removed
+     */
+    private void rotate() {
+	File oldest = new File(logFile.getPath() + "." + backups);
+	if (oldest.exists() && !oldest.delete()) {
+	    System.err.println("ERROR:\nThe old log file " + oldest.getPath() + " could not be removed");
+	}
+	for (int i = backups - 1; i >= 1; i--) {
+	    File backup = new File(logFile.getPath() + "." + i);
+	    if (backup.exists()) {
+		backup.renameTo(new File(logFile.getPath() + "." + (i + 1)));
+	    }
+	}
+	if (backups < 1 || !logFile.renameTo(new File(logFile.getPath() + ".1"))) {
+	    logFile.delete();
+	}
+    }
+}
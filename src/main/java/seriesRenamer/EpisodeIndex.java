@@ -0,0 +1,82 @@
+package seriesRenamer;
+
+import com.moviejukebox.thetvdb.model.Episode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All episodes of a single series, indexed by their aired, DVD and absolute numbers so each episode can be found
+ * without going through the whole list.
+ */
+class EpisodeIndex {
+    private Map<Long, Episode> airedEpisodes = new HashMap<Long, Episode>();
+    private Map<Long, Episode> dvdEpisodes = new HashMap<Long, Episode>();
+    private Map<Integer, Episode> absoluteEpisodes = new HashMap<Integer, Episode>();
+
+    EpisodeIndex(List<Episode> episodes) {
+	if (episodes == null) {
+	    return;
+	}
+	for (Episode ep : episodes) {
+	    addIfAbsent(airedEpisodes, getKey(ep.getSeasonNumber(), ep.getEpisodeNumber()), ep);
+	    int dvdSeasonNum = parseNumber(ep.getDvdSeason());
+	    int dvdEpisodeNum = parseNumber(ep.getDvdEpisodeNumber());
+	    if (dvdSeasonNum >= 0 && dvdEpisodeNum >= 0) {
+		addIfAbsent(dvdEpisodes, getKey(dvdSeasonNum, dvdEpisodeNum), ep);
+	    }
+	    int absoluteNum = parseNumber(ep.getAbsoluteNumber());
+	    if (absoluteNum >= 0) {
+		addIfAbsent(absoluteEpisodes, absoluteNum, ep);
+	    }
+	}
+    }
+
+    Episode getEpisode(int season, int episode) {
+	return airedEpisodes.get(getKey(season, episode));
+    }
+
+    Episode getDVDEpisode(int season, int episode) {
+	return dvdEpisodes.get(getKey(season, episode));
+    }
+
+    Episode getAbsoluteEpisode(int absolute) {
+	return absoluteEpisodes.get(absolute);
+    }
+
+    boolean isEmpty() {
+	return airedEpisodes.isEmpty();
+    }
+
+    private static Long getKey(int season, int episode) {
+	return Long.valueOf(((long) season << 32) | (episode & 0xffffffffL));
+    }
+
+    /**
+     * The first episode with a number is kept, like when looking through the list in order
+     */
+    private static <K> void addIfAbsent(Map<K, Episode> index, K key, Episode ep) {
+	if (!index.containsKey(key)) {
+	    index.put(key, ep);
+	}
+    }
+
+    /**
+     * Parse a number that TheTVDB may provide as a decimal, e.g. "1.0" for DVD episodes
+     * 
+     * @return the number, or -1 if it's not available
+     */
+    private static int parseNumber(String number) {
+	if (number == null || number.isEmpty()) {
+	    return -1;
+	}
+	try {
+	    if (number.matches("[0-9]*")) {
+		return Integer.valueOf(number).intValue();
+	    }
+	    return Double.valueOf(number).intValue();
+	} catch (NumberFormatException invalidNumber) {
+	    return -1;
+	}
+    }
+}
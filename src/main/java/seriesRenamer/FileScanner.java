@@ -0,0 +1,112 @@
+package seriesRenamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Finds the files to rename in a directory. The attributes that are read while walking the directory are used to tell
+ * the files from the directories, so each entry is only looked at once, and files without a valid extension are
+ * filtered out right away. Every file is passed on as soon as it's found, so it can be looked up while the rest of the
+ * directory is still being searched.
+ */
+class FileScanner {
+    /**
+     * Receives the files in the order in which they are found
+     */
+    interface Handler {
+	void found(File file);
+
+	void skipped(File file);
+
+	void failed(File file, IOException error);
+    }
+
+    private final FilenameGrammar grammar;
+    private final int maxDepth;
+    private final List<PathMatcher> excludes = new ArrayList<PathMatcher>();
+
+    /**
+     * @param maxDepth
+     *            the number of levels of subdirectories that are searched, 0 to only search the directory itself
+     * @param excludeGlobs
+     *            the files and directories that are left out, as glob patterns that are matched to their name and to
+     *            their path below the directory
+     */
+    FileScanner(FilenameGrammar grammar, int maxDepth, List<String> excludeGlobs) {
+	this.grammar = grammar;
+	this.maxDepth = maxDepth;
+	for (String excludeGlob : excludeGlobs) {
+	    excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + excludeGlob));
+	}
+    }
+
+    /**
+     * Search the target, which can be a directory or a single file
+     */
+    void scan(Path target, Handler handler) throws IOException {
+	scan(target, target, handler);
+    }
+
+    /**
+     * Search a file or directory below the root. The maximum depth and the excludes are applied as if the whole root
+     * was searched.
+     */
+    void scan(final Path root, Path target, final Handler handler) throws IOException {
+	int level = root.equals(target) ? 0 : root.relativize(target).getNameCount();
+	int walkDepth = maxDepth == Integer.MAX_VALUE ? maxDepth : Math.max(1, maxDepth + 1 - level);
+	Files.walkFileTree(target, EnumSet.of(FileVisitOption.FOLLOW_LINKS), walkDepth, new SimpleFileVisitor<Path>() {
+	    @Override
+	    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+		if (!dir.equals(root) && isExcluded(root, dir)) {
+		    return FileVisitResult.SKIP_SUBTREE;
+		}
+		return FileVisitResult.CONTINUE;
+	    }
+
+	    @Override
+	    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+		// Directories below the maximum depth are visited as files
+		if (attrs.isDirectory() || isExcluded(root, file)) {
+		    return FileVisitResult.CONTINUE;
+		}
+		if (grammar.hasValidExtension(file.getFileName().toString())) {
+		    handler.found(file.toFile());
+		} else {
+		    handler.skipped(file.toFile());
+		}
+		return FileVisitResult.CONTINUE;
+	    }
+
+	    @Override
+	    public FileVisitResult visitFileFailed(Path file, IOException error) {
+		handler.failed(file.toFile(), error);
+		return FileVisitResult.CONTINUE;
+	    }
+	});
+    }
+
+    private boolean isExcluded(Path root, Path path) {
+	if (excludes.isEmpty()) {
+	    return false;
+	}
+	Path name = path.getFileName();
+	Path relativePath = root.relativize(path);
+	for (PathMatcher exclude : excludes) {
+	    if ((name != null && exclude.matches(name)) || exclude.matches(relativePath)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+}
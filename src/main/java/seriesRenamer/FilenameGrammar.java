@@ -0,0 +1,156 @@
+package seriesRenamer;
+
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The patterns used to take a filename apart, compiled once from the properties. A filename is split into the series
+ * name, season, episode and multipart episode with a single match. The grammar doesn't change after it's been created,
+ * so it can be used by several jobs at the same time.
+ */
+class FilenameGrammar {
+    private static final String MULTIPART_SEASON = "((?i)s?[0-9]{0,2})";
+    private static final String MULTIPART_EPISODE = "((?i)[ex]?[0-9]{2,2})";
+    private static final String SERIES_PREFIX = "^(.*?)\\s?-?\\s?[^0-9(]";
+
+    private final Pattern filenamePattern;
+    private final Pattern wordSeparatorPattern;
+    private final Pattern extensionPattern;
+    private final boolean absolute;
+    private final int seasonGroup;
+    private final int episodeGroup;
+    private final int multipartEpisodeGroup;
+
+    /**
+     * @param absolute
+     *            true if the files are numbered by their absolute episode number, without a season
+     */
+    FilenameGrammar(Properties props, boolean absolute) {
+	String season = props.getProperty("season");
+	String episode = props.getProperty("episode");
+	this.absolute = absolute;
+	// The season and episode patterns come from the properties, so the groups after them have to be counted
+	if (absolute) {
+	    filenamePattern = Pattern.compile(SERIES_PREFIX + episode + "(-?" + MULTIPART_EPISODE + ")?" + "[^0-9)]");
+	    seasonGroup = -1;
+	    episodeGroup = 2;
+	    multipartEpisodeGroup = episodeGroup + countGroups(episode) + 1;
+	} else {
+	    filenamePattern = Pattern.compile(SERIES_PREFIX + season + episode + "(-?" + MULTIPART_SEASON
+		    + MULTIPART_EPISODE + ")?" + "[^0-9)]");
+	    seasonGroup = 2;
+	    episodeGroup = seasonGroup + countGroups(season);
+	    multipartEpisodeGroup = episodeGroup + countGroups(episode) + 2;
+	}
+	wordSeparatorPattern = Pattern.compile(joinAlternatives(props.getProperty("wordSeparators")));
+	extensionPattern = Pattern.compile(joinAlternatives(props.getProperty("validExtensions")));
+    }
+
+    /**
+     * @return the parts of the filename, or null if the filename doesn't contain a season and episode number
+     */
+    ParsedName parse(String name) {
+	Matcher match = filenamePattern.matcher(name);
+	if (!match.find()) {
+	    return null;
+	}
+	String seriesName = wordSeparatorPattern.matcher(match.group(1)).replaceAll(" ").trim();
+	String season = absolute ? "" : stripNumber(match.group(seasonGroup), "s");
+	String episode = stripNumber(match.group(episodeGroup), "ex");
+	String multipartEpisode = match.group(multipartEpisodeGroup);
+	if (multipartEpisode != null && !multipartEpisode.isEmpty()) {
+	    multipartEpisode = stripNumber(multipartEpisode, "ex");
+	}
+	return new ParsedName(seriesName, season, episode, multipartEpisode);
+    }
+
+    /**
+     * @return true if the extension of the filename is one of the validExtensions
+     */
+    boolean hasValidExtension(String name) {
+	return extensionPattern.matcher(getExtension(name).toLowerCase()).matches();
+    }
+
+    /**
+     * @return the part of the filename after the last dot, or the whole name if it doesn't have a dot
+     */
+    static String getExtension(String name) {
+	return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Remove the letters in front of a number, ignoring their case, and its leading zeroes
+     */
+    private static String stripNumber(String number, String prefixLetters) {
+	number = number.trim();
+	int start = 0;
+	while (start < number.length() && prefixLetters.indexOf(Character.toLowerCase(number.charAt(start))) >= 0) {
+	    start++;
+	}
+	while (start < number.length() - 1 && number.charAt(start) == '0') {
+	    start++;
+	}
+	return number.substring(start);
+    }
+
+    private static int countGroups(String regex) {
+	return Pattern.compile(regex).matcher("").groupCount();
+    }
+
+    /**
+     * Combine the semicolon separated patterns from a property into a single pattern that matches any of them
+     */
+    private static String joinAlternatives(String property) {
+	StringBuilder alternatives = new StringBuilder();
+	for (String alternative : property.split(";")) {
+	    if (alternatives.length() > 0) {
+		alternatives.append('|');
+	    }
+	    alternatives.append("(?:").append(alternative.trim()).append(')');
+	}
+	return alternatives.toString();
+    }
+
+    /**
+     * The parts of a filename that are used to look up the episode
+     */
+    static class ParsedName {
+	private final String seriesName;
+	private final String season;
+	private final String episode;
+	private final String multipartEpisode;
+
+	ParsedName(String seriesName, String season, String episode, String multipartEpisode) {
+	    this.seriesName = seriesName;
+	    this.season = season;
+	    this.episode = episode;
+	    this.multipartEpisode = multipartEpisode;
+	}
+
+	/**
+	 * @return the series name with the word separators replaced by spaces
+	 */
+	String getSeriesName() {
+	    return seriesName;
+	}
+
+	/**
+	 * @return the season number without leading zeroes, or an empty string for absolute numbering
+	 */
+	String getSeason() {
+	    return season;
+	}
+
+	String getEpisode() {
+	    return episode;
+	}
+
+	/**
+	 * @return the second episode number when a file contains two episodes, otherwise null or an empty string
+	 */
+	String getMultipartEpisode() {
+	    return multipartEpisode;
+	}
+    }
+}
@@ -0,0 +1,198 @@
+package seriesRenamer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decodes the XML entities in a new filename and replaces or removes the characters that are defined in the
+ * replaceCharacters and reservedCharacters properties. The entries are applied in the same order as before, but each
+ * run of entries that are a single (escaped) character is turned into a table with the replacement of each character
+ * once, so with the default properties a name is sanitized in a single pass. An entry that is a real regular
+ * expression is still matched as a regular expression, between the runs it separates.
+ */
+class FilenameSanitizer {
+    private static final String[] ENTITIES = { "&quot;", "&amp;", "&apos;", "&lt;", "&gt;" };
+    private static final char[] DECODED = { '"', '&', '\'', '<', '>' };
+    private static final int AMP = 1;
+    private static final String METACHARACTERS = ".^$[](){}+*?|\\";
+
+    /**
+     * A run of single character entries, or an entry that is a regular expression
+     */
+    private static class Step {
+	/** The replacement of each character, or null if the character is kept */
+	private String[] translations = new String[0];
+	private Pattern pattern;
+	private String replacement;
+    }
+
+    private final List<Step> steps = new ArrayList<Step>();
+
+    /**
+     * @param invalidEntries
+     *            the entries of the properties that could not be used are added to this list
+     */
+    FilenameSanitizer(Properties props, List<String> invalidEntries) {
+	// The replacements are made in the same order as the entries, so a replacement can be changed again by a later
+	// entry, and a reserved character is also removed from the replacements
+	for (String replacePair : props.getProperty("replaceCharacters", "").split(";")) {
+	    if (replacePair.trim().isEmpty()) {
+		continue;
+	    }
+	    String[] replaceKeyValue = replacePair.split(",");
+	    if (replaceKeyValue.length < 2) {
+		invalidEntries.add(replacePair);
+		continue;
+	    }
+	    addReplacement(replaceKeyValue[0].trim(), replaceKeyValue[1].trim(), invalidEntries);
+	}
+	for (String reservedChar : props.getProperty("reservedCharacters", "").split(";")) {
+	    if (!reservedChar.isEmpty()) {
+		addReplacement(reservedChar, "", invalidEntries);
+	    }
+	}
+    }
+
+    /**
+     * @return the name with its entities decoded and its characters replaced
+     */
+    String sanitize(String name) {
+	int first = 0;
+	String[] translations = null;
+	if (!steps.isEmpty() && steps.get(0).pattern == null) {
+	    // The entities are decoded in the same pass as the first run of characters
+	    translations = steps.get(0).translations;
+	    first = 1;
+	}
+	String result = translate(name, translations, true);
+	for (int i = first; i < steps.size(); i++) {
+	    Step step = steps.get(i);
+	    if (step.pattern == null) {
+		result = translate(result, step.translations, false);
+	    } else {
+		result = step.pattern.matcher(result).replaceAll(step.replacement);
+	    }
+	}
+	return result;
+    }
+
+    private static String translate(String name, String[] translations, boolean decode) {
+	StringBuilder sanitized = new StringBuilder(name.length());
+	int length = name.length();
+	for (int i = 0; i < length; i++) {
+	    char c = name.charAt(i);
+	    if (decode && c == '&') {
+		int entity = findEntity(name, i, 0);
+		if (entity >= 0) {
+		    i += ENTITIES[entity].length() - 1;
+		    c = DECODED[entity];
+		}
+		if (entity == AMP) {
+		    // The entities after &amp; were decoded after it, so &amp;lt; still becomes <. The & that was decoded
+		    // now is at i, the end of &amp;
+		    int next = findEntity(name, i, AMP + 1);
+		    if (next >= 0) {
+			i += ENTITIES[next].length() - 1;
+			c = DECODED[next];
+		    }
+		}
+	    }
+	    String translation = translations != null && c < translations.length ? translations[c] : null;
+	    if (translation == null) {
+		sanitized.append(c);
+	    } else {
+		sanitized.append(translation);
+	    }
+	}
+	return sanitized.toString();
+    }
+
+    /**
+     * @return the first entity from the given one on whose text after the & follows index, or -1
+     */
+    private static int findEntity(String name, int index, int from) {
+	for (int entity = from; entity < ENTITIES.length; entity++) {
+	    String text = ENTITIES[entity];
+	    if (name.regionMatches(index + 1, text, 1, text.length() - 1)) {
+		return entity;
+	    }
+	}
+	return -1;
+    }
+
+    private void addReplacement(String key, String value, List<String> invalidEntries) {
+	if (key.equals("|") && value.isEmpty()) {
+	    // Only matches the empty string, so it never changed a name
+	    return;
+	}
+	int character = toCharacter(key);
+	if (character < 0) {
+	    Step step = new Step();
+	    try {
+		step.pattern = Pattern.compile(key);
+	    } catch (PatternSyntaxException invalidRegex) {
+		invalidEntries.add(key);
+		return;
+	    }
+	    step.replacement = value;
+	    steps.add(step);
+	    return;
+	}
+	Step step = steps.isEmpty() ? null : steps.get(steps.size() - 1);
+	if (step == null || step.pattern != null) {
+	    step = new Step();
+	    steps.add(step);
+	}
+	String replacement = unescape(value);
+	char c = (char) character;
+	String[] translations = step.translations;
+	for (int i = 0; i < translations.length; i++) {
+	    if (translations[i] != null && translations[i].indexOf(c) >= 0) {
+		translations[i] = translations[i].replace(String.valueOf(c), replacement);
+	    }
+	}
+	if (c >= translations.length) {
+	    String[] grown = new String[c + 1];
+	    System.arraycopy(translations, 0, grown, 0, translations.length);
+	    translations = grown;
+	    step.translations = grown;
+	}
+	if (translations[c] == null) {
+	    translations[c] = replacement;
+	}
+    }
+
+    /**
+     * @return the character that the regular expression matches, or -1 if it matches more than a single character
+     */
+    private static int toCharacter(String regex) {
+	if (regex.length() == 1 && METACHARACTERS.indexOf(regex.charAt(0)) < 0) {
+	    return regex.charAt(0);
+	}
+	if (regex.length() == 2 && regex.charAt(0) == '\\' && !Character.isLetterOrDigit(regex.charAt(1))) {
+	    return regex.charAt(1);
+	}
+	return -1;
+    }
+
+    /**
+     * Remove the escaping backslashes that a replacement of replaceAll() would have
+     */
+    private static String unescape(String replacement) {
+	if (replacement.indexOf('\\') < 0) {
+	    return replacement;
+	}
+	StringBuilder unescaped = new StringBuilder(replacement.length());
+	for (int i = 0; i < replacement.length(); i++) {
+	    char c = replacement.charAt(i);
+	    if (c == '\\' && i + 1 < replacement.length()) {
+		c = replacement.charAt(++i);
+	    }
+	    unescaped.append(c);
+	}
+	return unescaped.toString();
+    }
+}
@@ -0,0 +1,236 @@
+package seriesRenamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory for files that are added or changed. A file is only passed on once it hasn't changed for a
+ * while, so a download that's still being written isn't renamed halfway. The files that settled at the same time are
+ * passed on together. A directory that's added is passed on as a whole, since the files that were already in it don't
+ * cause any events.
+ */
+class FolderWatcher {
+    /**
+     * Receives the files that have been added or changed
+     */
+    interface Handler {
+	void changed(List<File> files);
+
+	void failed(File file, IOException error);
+    }
+
+    private final Path root;
+    private final int maxDepth;
+    private final long quietPeriod;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+    /** The files that changed, with the time of their last change */
+    private final Map<Path, Pending> pending = new LinkedHashMap<Path, Pending>();
+    /** The files whose next change isn't passed on, with the time until which that change is expected */
+    private final Map<Path, Long> ignored = new HashMap<Path, Long>();
+
+    /**
+     * @param maxDepth
+     *            the number of levels of subdirectories that are watched, 0 to only watch the directory itself
+     * @param quietPeriod
+     *            the time in milliseconds a file has to be left alone before it's passed on
+     */
+    FolderWatcher(Path root, int maxDepth, long quietPeriod) throws IOException {
+	this.root = root;
+	this.maxDepth = maxDepth;
+	this.quietPeriod = quietPeriod;
+	this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Don't pass on the next change of the file, because it's been made by the program itself. If the change doesn't
+     * arrive within the quiet period after the handler returns, the file is watched again.
+     */
+    void ignore(File file) {
+	ignored.put(file.toPath(), Long.MAX_VALUE);
+    }
+
+    /**
+     * Watch the directory until the thread is interrupted. The handler is called on the same thread, so no events are
+     * handled while it's busy, they're handled afterwards.
+     */
+    void watch(Handler handler) throws IOException {
+	register(root, handler);
+	try {
+	    while (!Thread.currentThread().isInterrupted()) {
+		WatchKey key = watchService.poll(getTimeout(), TimeUnit.MILLISECONDS);
+		while (key != null) {
+		    handleEvents(key, handler);
+		    key = watchService.poll();
+		}
+		expireIgnored();
+		List<File> settled = takeSettled();
+		if (!settled.isEmpty()) {
+		    handler.changed(settled);
+		    // The changes the handler made are only polled now, so that's when waiting for them starts
+		    long expiry = System.currentTimeMillis() + quietPeriod;
+		    for (Map.Entry<Path, Long> ignore : ignored.entrySet()) {
+			if (ignore.getValue() == Long.MAX_VALUE) {
+			    ignore.setValue(expiry);
+			}
+		    }
+		}
+	    }
+	} catch (InterruptedException interrupted) {
+	    Thread.currentThread().interrupt();
+	} finally {
+	    watchService.close();
+	}
+    }
+
+    private void handleEvents(WatchKey key, Handler handler) {
+	Path dir = directories.get(key);
+	for (WatchEvent<?> event : key.pollEvents()) {
+	    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+		// Some events were lost, so the whole directory is searched again
+		touch(root);
+		continue;
+	    }
+	    Path path = dir.resolve((Path) event.context());
+	    if (ignored.remove(path) != null) {
+		continue;
+	    }
+	    if (Files.isDirectory(path)) {
+		if (getLevel(path) > maxDepth) {
+		    continue;
+		}
+		if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+		    register(path, handler);
+		}
+	    }
+	    touch(path);
+	}
+	if (!key.reset()) {
+	    directories.remove(key);
+	}
+    }
+
+    private void expireIgnored() {
+	long now = System.currentTimeMillis();
+	Iterator<Long> it = ignored.values().iterator();
+	while (it.hasNext()) {
+	    if (it.next() < now) {
+		it.remove();
+	    }
+	}
+    }
+
+    private void touch(Path path) {
+	// A file in a directory that's passed on as a whole only delays the directory
+	for (Path parent = path.getParent(); parent != null && parent.startsWith(root); parent = parent.getParent()) {
+	    Pending parentChange = pending.get(parent);
+	    if (parentChange != null) {
+		parentChange.lastChange = System.currentTimeMillis();
+		return;
+	    }
+	}
+	Pending change = pending.remove(path);
+	if (change == null) {
+	    change = new Pending();
+	}
+	change.lastChange = System.currentTimeMillis();
+	change.size = path.toFile().length();
+	// Keep the files in the order in which they last changed
+	pending.put(path, change);
+    }
+
+    /**
+     * @return the files and directories that haven't changed during the quiet period
+     */
+    private List<File> takeSettled() {
+	List<File> settled = new ArrayList<File>();
+	long now = System.currentTimeMillis();
+	Iterator<Map.Entry<Path, Pending>> it = pending.entrySet().iterator();
+	while (it.hasNext()) {
+	    Map.Entry<Path, Pending> change = it.next();
+	    if (now - change.getValue().lastChange < quietPeriod) {
+		continue;
+	    }
+	    File file = change.getKey().toFile();
+	    if (!file.exists()) {
+		// Removed or renamed before it settled
+		it.remove();
+	    } else if (file.length() != change.getValue().size) {
+		// Some downloaders write without changing the modification time often enough to cause events
+		change.getValue().size = file.length();
+		change.getValue().lastChange = now;
+	    } else {
+		it.remove();
+		settled.add(file);
+	    }
+	}
+	return settled;
+    }
+
+    private long getTimeout() {
+	long timeout = quietPeriod;
+	long now = System.currentTimeMillis();
+	for (Pending change : pending.values()) {
+	    timeout = Math.min(timeout, Math.max(1L, change.lastChange + quietPeriod - now));
+	}
+	return timeout;
+    }
+
+    /**
+     * @return the number of levels of subdirectories between the root and the directory
+     */
+    private int getLevel(Path dir) {
+	return root.equals(dir) ? 0 : root.relativize(dir).getNameCount();
+    }
+
+    /**
+     * Watch the directory and its subdirectories, as far as the maximum depth allows
+     */
+    private void register(Path dir, final Handler handler) {
+	int walkDepth = maxDepth == Integer.MAX_VALUE ? maxDepth : maxDepth - getLevel(dir) + 1;
+	try {
+	    Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), walkDepth, new SimpleFileVisitor<Path>() {
+		@Override
+		public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) throws IOException {
+		    if (getLevel(subDir) <= maxDepth) {
+			directories.put(subDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY), subDir);
+		    }
+		    return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFileFailed(Path file, IOException error) {
+		    handler.failed(file.toFile(), error);
+		    return FileVisitResult.CONTINUE;
+		}
+	    });
+	} catch (IOException registerIO) {
+	    handler.failed(dir.toFile(), registerIO);
+	}
+    }
+
+    private static class Pending {
+	private long lastChange;
+	private long size;
+    }
+}
@@ -0,0 +1,322 @@
+package seriesRenamer;
+
+import com.moviejukebox.thetvdb.model.Episode;
+import com.moviejukebox.thetvdb.model.Series;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The series and episode titles that have been retrieved from TheTVDB, saved in a single file so files can be renamed
+ * without a connection.</br>
+ * </br>
+ * The file starts with a header, followed by the series table, the episode table and the titles. The episode table
+ * has a fixed size record for every episode number, sorted by series id and number, so an episode is found with a
+ * binary search in the contents of the file, which are read into a single buffer when the file is opened. The series
+ * table is small and read into a map.
+ */
+class OfflineIndex {
+    static final int AIRED = 0;
+    static final int DVD = 1;
+    static final int ABSOLUTE = 2;
+
+    private static final int MAGIC = 0x53524958; // "SRIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 12;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private File indexFile;
+    private ByteBuffer buffer = null;
+    private int episodeCount = 0;
+    private int episodeTable = 0;
+    private int titleTable = 0;
+    private Map<String, Series> series = new HashMap<String, Series>();
+    private Map<String, Series> addedSeries = new HashMap<String, Series>();
+    private Map<Long, String> addedEpisodes = new HashMap<Long, String>();
+
+    private OfflineIndex(File indexFile) {
+	this.indexFile = indexFile;
+    }
+
+    /**
+     * Open the index file, an index that doesn't exist yet is empty
+     *
+     * @throws IOException
+     *             if the file exists but is not a valid index
+     */
+    static OfflineIndex open(File indexFile) throws IOException {
+	OfflineIndex index = new OfflineIndex(indexFile);
+	if (indexFile.exists()) {
+	    index.load();
+	}
+	return index;
+    }
+
+    private void load() throws IOException {
+	RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+	try {
+	    // The file is replaced by every save, so it's read at once instead of being mapped
+	    byte[] contents = new byte[(int) file.length()];
+	    file.readFully(contents);
+	    ByteBuffer loaded = ByteBuffer.wrap(contents);
+	    if (loaded.capacity() < HEADER_SIZE || loaded.getInt(0) != MAGIC || loaded.getInt(4) != VERSION) {
+		throw new IOException("The offline index " + indexFile.getName() + " is not valid");
+	    }
+	    int seriesCount = loaded.getInt(8);
+	    episodeCount = loaded.getInt(12);
+
+	    ByteBuffer reader = loaded.duplicate();
+	    reader.position(HEADER_SIZE);
+	    for (int i = 0; i < seriesCount; i++) {
+		String name = readString(reader);
+		Series found = new Series();
+		found.setId(String.valueOf(reader.getInt()));
+		found.setSeriesName(readString(reader));
+		series.put(name, found);
+	    }
+	    episodeTable = reader.position();
+	    titleTable = episodeTable + episodeCount * RECORD_SIZE;
+	    buffer = loaded;
+	} finally {
+	    file.close();
+	}
+    }
+
+    /**
+     * @param name
+     *            the name of the series as it was searched for, or the name of the series on TheTVDB
+     * @return the series, or null if it's not in the index
+     */
+    synchronized Series findSeries(String name) {
+	String key = name.toLowerCase();
+	Series found = addedSeries.get(key);
+	if (found == null) {
+	    found = series.get(key);
+	}
+	return found;
+    }
+
+    /**
+     * @param type
+     *            AIRED, DVD or ABSOLUTE, the season is ignored for ABSOLUTE
+     * @return the title of the episode, or null if it's not in the index
+     */
+    String getEpisodeName(String seriesID, int type, int season, int episode) {
+	Long key = getKey(seriesID, type, season, episode);
+	if (key == null) {
+	    return null;
+	}
+	// The buffer and the tables are replaced by save, so they're only read while holding the lock
+	synchronized (this) {
+	    String title = addedEpisodes.get(key);
+	    if (title != null) {
+		return title;
+	    }
+	    return findTitle(key.longValue());
+	}
+    }
+
+    /**
+     * Binary search through the episode table in the file
+     */
+    private String findTitle(long key) {
+	if (buffer == null) {
+	    return null;
+	}
+	int low = 0;
+	int high = episodeCount - 1;
+	while (low <= high) {
+	    int mid = (low + high) >>> 1;
+	    long midKey = getRecordKey(mid);
+	    if (midKey < key) {
+		low = mid + 1;
+	    } else if (midKey > key) {
+		high = mid - 1;
+	    } else {
+		return getTitle(buffer.getInt(episodeTable + mid * RECORD_SIZE + 8));
+	    }
+	}
+	return null;
+    }
+
+    private long getRecordKey(int record) {
+	int offset = episodeTable + record * RECORD_SIZE;
+	return ((long) buffer.getInt(offset) << 32) | (buffer.getInt(offset + 4) & 0xffffffffL);
+    }
+
+    private String getTitle(int titleOffset) {
+	ByteBuffer reader = buffer.duplicate();
+	reader.position(titleTable + titleOffset);
+	return readString(reader);
+    }
+
+    /**
+     * Remember a series that was found on TheTVDB, under the searched name and its own name
+     */
+    synchronized void addSeries(String name, Series found) {
+	if (parseId(found.getId()) < 0) {
+	    return;
+	}
+	addedSeries.put(name.toLowerCase(), found);
+	addedSeries.put(found.getSeriesName().toLowerCase(), found);
+    }
+
+    synchronized void addEpisodes(String seriesID, List<Episode> episodes) {
+	for (Episode ep : episodes) {
+	    addEpisode(seriesID, ep);
+	}
+    }
+
+    /**
+     * Remember the title of an episode under its aired, DVD and absolute numbers
+     */
+    synchronized void addEpisode(String seriesID, Episode ep) {
+	String title = ep.getEpisodeName();
+	if (title == null || title.isEmpty()) {
+	    return;
+	}
+	addEpisode(getKey(seriesID, AIRED, ep.getSeasonNumber(), ep.getEpisodeNumber()), title);
+	addEpisode(getKey(seriesID, DVD, parseNumber(ep.getDvdSeason()), parseNumber(ep.getDvdEpisodeNumber())), title);
+	addEpisode(getKey(seriesID, ABSOLUTE, 0, parseNumber(ep.getAbsoluteNumber())), title);
+    }
+
+    private void addEpisode(Long key, String title) {
+	// The first episode with a number is kept, like when looking through the list in order
+	if (key != null && !addedEpisodes.containsKey(key)) {
+	    addedEpisodes.put(key, title);
+	}
+    }
+
+    /**
+     * Write the index with everything that has been added, if anything has been added. The new file replaces the
+     * old one at once and is read afterwards, so the added entries don't have to be kept or written again by the next
+     * save.
+     */
+    synchronized void save() throws IOException {
+	if (addedSeries.isEmpty() && addedEpisodes.isEmpty()) {
+	    return;
+	}
+	Map<String, Series> allSeries = new TreeMap<String, Series>(series);
+	allSeries.putAll(addedSeries);
+	TreeMap<Long, String> allEpisodes = new TreeMap<Long, String>();
+	for (int i = 0; buffer != null && i < episodeCount; i++) {
+	    allEpisodes.put(getRecordKey(i), getTitle(buffer.getInt(episodeTable + i * RECORD_SIZE + 8)));
+	}
+	allEpisodes.putAll(addedEpisodes);
+
+	File parent = indexFile.getAbsoluteFile().getParentFile();
+	if (!parent.exists() && !parent.mkdirs()) {
+	    throw new IOException("The directory for " + indexFile.getName() + " could not be created");
+	}
+	File tempFile = new File(parent, indexFile.getName() + ".tmp");
+	DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+	try {
+	    out.writeInt(MAGIC);
+	    out.writeInt(VERSION);
+	    out.writeInt(allSeries.size());
+	    out.writeInt(allEpisodes.size());
+	    for (Map.Entry<String, Series> entry : allSeries.entrySet()) {
+		writeString(out, entry.getKey());
+		out.writeInt(parseId(entry.getValue().getId()));
+		writeString(out, entry.getValue().getSeriesName());
+	    }
+	    // The titles are shared by the numbers of the same episode
+	    ByteArrayOutputStream titleBytes = new ByteArrayOutputStream();
+	    DataOutputStream titles = new DataOutputStream(titleBytes);
+	    Map<String, Integer> titleOffsets = new HashMap<String, Integer>();
+	    for (Map.Entry<Long, String> entry : allEpisodes.entrySet()) {
+		Integer titleOffset = titleOffsets.get(entry.getValue());
+		if (titleOffset == null) {
+		    titleOffset = Integer.valueOf(titles.size());
+		    titleOffsets.put(entry.getValue(), titleOffset);
+		    writeString(titles, entry.getValue());
+		}
+		out.writeLong(entry.getKey().longValue());
+		out.writeInt(titleOffset.intValue());
+	    }
+	    titles.flush();
+	    titleBytes.writeTo(out);
+	} finally {
+	    out.close();
+	}
+	try {
+	    try {
+		Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+	    } catch (AtomicMoveNotSupportedException error) {
+		Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	    }
+	} catch (IOException error) {
+	    // The old file and buffer are still there, and the added entries are kept for the next save
+	    tempFile.delete();
+	    throw new IOException("The offline index " + indexFile.getName() + " could not be replaced", error);
+	}
+	addedSeries.clear();
+	addedEpisodes.clear();
+	load();
+    }
+
+    /**
+     * The key sorts the episodes by series id, then type, season and episode number
+     *
+     * @return the key, or null if one of the numbers is not available
+     */
+    private static Long getKey(String seriesID, int type, int season, int episode) {
+	int id = parseId(seriesID);
+	if (id < 0 || season < 0 || season > 0xfff || episode < 0 || episode > 0xffff) {
+	    return null;
+	}
+	int number = (type << 28) | (season << 16) | episode;
+	return Long.valueOf(((long) id << 32) | (number & 0xffffffffL));
+    }
+
+    private static int parseId(String seriesID) {
+	try {
+	    return Integer.parseInt(seriesID);
+	} catch (NumberFormatException invalidNumber) {
+	    return -1;
+	}
+    }
+
+    /**
+     * Parse a number that TheTVDB may provide as a decimal, e.g. "1.0" for DVD episodes
+     *
+     * @return the number, or -1 if it's not available
+     */
+    private static int parseNumber(String number) {
+	if (number == null || number.isEmpty()) {
+	    return -1;
+	}
+	try {
+	    return Double.valueOf(number).intValue();
+	} catch (NumberFormatException invalidNumber) {
+	    return -1;
+	}
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+	byte[] bytes = value.getBytes(UTF8);
+	out.writeShort(bytes.length);
+	out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer reader) {
+	byte[] bytes = new byte[reader.getShort() & 0xffff];
+	reader.get(bytes);
+	return new String(bytes, UTF8);
+    }
+}
@@ -0,0 +1,94 @@
+package seriesRenamer;
+
+import java.io.File;
+
+/**
+ * The state of renaming a single file. Each file gets its own context, so several files can be resolved at the same time.
+ */
+class RenameContext {
+    private File file;
+    private String newName = null;
+    private String seriesID = "";
+    private String network = "";
+    private boolean eptitleFound = false;
+    private boolean multiEptitleFound = false;
+    private boolean multiEpFound = false;
+    private EpisodeIndex episodeIndex = null;
+
+    RenameContext(File file) {
+	this.file = file;
+    }
+
+    File getFile() {
+	return file;
+    }
+
+    String getNewName() {
+	return newName;
+    }
+
+    void setNewName(String newName) {
+	this.newName = newName;
+    }
+
+    String getSeriesID() {
+	return seriesID;
+    }
+
+    void setSeriesID(String seriesID) {
+	this.seriesID = seriesID;
+    }
+
+    /**
+     * @return the network that airs the series, or an empty string if it isn't known
+     */
+    String getNetwork() {
+	return network;
+    }
+
+    void setNetwork(String network) {
+	this.network = network == null ? "" : network;
+    }
+
+    boolean isEptitleFound() {
+	return eptitleFound;
+    }
+
+    void setEptitleFound(boolean eptitleFound) {
+	this.eptitleFound = eptitleFound;
+    }
+
+    boolean isMultiEptitleFound() {
+	return multiEptitleFound;
+    }
+
+    void setMultiEptitleFound(boolean multiEptitleFound) {
+	this.multiEptitleFound = multiEptitleFound;
+    }
+
+    boolean isMultiEpFound() {
+	return multiEpFound;
+    }
+
+    void setMultiEpFound(boolean multiEpFound) {
+	this.multiEpFound = multiEpFound;
+    }
+
+    /**
+     * @return the index of all episodes of the series, or null if the episodes are retrieved one by one
+     */
+    EpisodeIndex getEpisodeIndex() {
+	return episodeIndex;
+    }
+
+    void setEpisodeIndex(EpisodeIndex episodeIndex) {
+	this.episodeIndex = episodeIndex;
+    }
+
+    /**
+     * @return true if all the information needed for the new name was found
+     */
+    boolean isResolved() {
+	return eptitleFound && (!multiEpFound || multiEptitleFound);
+    }
+}
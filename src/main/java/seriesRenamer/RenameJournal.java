@@ -0,0 +1,103 @@
+package seriesRenamer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A record of the files that have been renamed during a run, so the run can be reverted. Every rename is appended to
+ * the journal as soon as it's been done, as a line with the old and the new path separated by a tab. The file is only
+ * created for the first rename.
+ */
+class RenameJournal {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char SEPARATOR = '\t';
+
+    private final File journalFile;
+    private Writer journalWriter = null;
+    private IOException error = null;
+
+    RenameJournal(File journalFile) {
+	this.journalFile = journalFile;
+    }
+
+    File getFile() {
+	return journalFile;
+    }
+
+    /**
+     * @return true if at least one rename has been recorded
+     */
+    boolean isWritten() {
+	return journalWriter != null;
+    }
+
+    /**
+     * @return the error that stopped the renames from being recorded, or null if they were all recorded
+     */
+    IOException getError() {
+	return error;
+    }
+
+    /**
+     * Append the rename to the journal and write it to the disk right away. The file has already been renamed at this
+     * point, so an error doesn't stop the run, it's kept to be reported afterwards.
+     */
+    void record(File from, File to) {
+	if (error != null) {
+	    return;
+	}
+	try {
+	    if (journalWriter == null) {
+		File journalDir = journalFile.getAbsoluteFile().getParentFile();
+		if (!journalDir.exists() && !journalDir.mkdirs()) {
+		    throw new IOException("The directory " + journalDir.getPath() + " could not be created");
+		}
+		journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true),
+			UTF8));
+	    }
+	    journalWriter.write(from.getAbsolutePath() + SEPARATOR + to.getAbsolutePath() + "\n");
+	    journalWriter.flush();
+	} catch (IOException journalIO) {
+	    error = journalIO;
+	}
+    }
+
+    void close() throws IOException {
+	if (journalWriter != null) {
+	    journalWriter.close();
+	}
+    }
+
+    /**
+     * Read the renames from a journal, in the order in which they were done. Each rename is an array with the old and
+     * the new file.
+     */
+    static List<File[]> read(File journalFile) throws IOException {
+	List<File[]> renames = new ArrayList<File[]>();
+	BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), UTF8));
+	try {
+	    String line = reader.readLine();
+	    while (line != null) {
+		int separator = line.indexOf(SEPARATOR);
+		if (separator > 0) {
+		    renames.add(new File[] { new File(line.substring(0, separator)),
+			    new File(line.substring(separator + 1)) });
+		}
+		line = reader.readLine();
+	    }
+	} finally {
+	    reader.close();
+	}
+	return renames;
+    }
+}
@@ -0,0 +1,172 @@
+package seriesRenamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All renames of a run, checked together before any file is touched. A rename to a name that's already used by
+ * another file is only allowed when that file is renamed as well, in which case it's moved out of the way first. Files
+ * that swap names (A to B and B to A) are renamed through a temporary name. Every rename is an atomic move, which is
+ * recorded in the journal right after it's been done.
+ */
+class RenamePlan {
+    private static final String TEMP_SUFFIX = ".seriesRenamer.tmp";
+
+    /** The new file of each file that is renamed, in the order in which they were added */
+    private final Map<File, File> renames = new LinkedHashMap<File, File>();
+    private final Set<File> targets = new HashSet<File>();
+    private final Map<File, String> failures = new HashMap<File, String>();
+
+    /**
+     * Add a rename to the plan, unless another file of the plan is already renamed to the same name
+     *
+     * @return true if the rename was added
+     */
+    boolean add(File file, File renamedFile) {
+	if (renames.containsKey(file) || !targets.add(renamedFile)) {
+	    return false;
+	}
+	renames.put(file, renamedFile);
+	return true;
+    }
+
+    /**
+     * Remove the renames to a name that is used by a file that isn't renamed itself. The file of a removed rename
+     * keeps its name, so this is repeated until no other rename depends on it.
+     *
+     * @return the files whose rename was removed, with the file that was in the way
+     */
+    Map<File, File> removeCollisions() {
+	Map<File, File> collisions = new LinkedHashMap<File, File>();
+	boolean removed = true;
+	while (removed) {
+	    removed = false;
+	    Iterator<Map.Entry<File, File>> it = renames.entrySet().iterator();
+	    while (it.hasNext()) {
+		Map.Entry<File, File> rename = it.next();
+		File renamedFile = rename.getValue();
+		if (renamedFile.exists() && !renames.containsKey(renamedFile)) {
+		    collisions.put(rename.getKey(), renamedFile);
+		    targets.remove(renamedFile);
+		    it.remove();
+		    removed = true;
+		}
+	    }
+	}
+	return collisions;
+    }
+
+    Map<File, File> getRenames() {
+	return renames;
+    }
+
+    /**
+     * @return the reason why the rename of the file failed, or null if it succeeded
+     */
+    String getFailure(File file) {
+	return failures.get(file);
+    }
+
+    /**
+     * Rename the files. A file is only renamed once the file that has its new name has been moved away, when that's
+     * not possible because the files form a cycle, one of them is moved to a temporary name first.
+     */
+    void execute(RenameJournal journal) {
+	Map<File, File> remaining = new LinkedHashMap<File, File>(renames);
+	// The original files that are renamed to a temporary name, to break a cycle
+	Map<File, File> originals = new HashMap<File, File>();
+	Set<File> stuck = new HashSet<File>();
+	while (!remaining.isEmpty()) {
+	    boolean progress = false;
+	    Iterator<Map.Entry<File, File>> it = remaining.entrySet().iterator();
+	    while (it.hasNext()) {
+		Map.Entry<File, File> rename = it.next();
+		File file = rename.getKey();
+		File renamedFile = rename.getValue();
+		if (remaining.containsKey(renamedFile)) {
+		    continue;
+		}
+		File original = originals.containsKey(file) ? originals.get(file) : file;
+		it.remove();
+		progress = true;
+		String reason = null;
+		if (stuck.contains(renamedFile)) {
+		    reason = "the file " + renamedFile.getName() + " could not be moved out of the way";
+		} else if (renamedFile.exists()) {
+		    reason = "the file " + renamedFile.getName() + " already exists";
+		} else {
+		    try {
+			move(file, renamedFile, journal);
+		    } catch (IOException moveIO) {
+			reason = moveIO.toString();
+		    }
+		}
+		if (reason != null) {
+		    if (original != file) {
+			reason += ", it has been left as " + file.getName();
+		    }
+		    failures.put(original, reason);
+		    stuck.add(file);
+		}
+	    }
+	    if (!progress) {
+		// Every remaining file waits for another one, so they form a cycle
+		Map.Entry<File, File> rename = remaining.entrySet().iterator().next();
+		File file = rename.getKey();
+		File tempFile = new File(file.getParentFile(), file.getName() + TEMP_SUFFIX);
+		remaining.remove(file);
+		try {
+		    if (tempFile.exists()) {
+			throw new IOException("the temporary file " + tempFile.getName() + " already exists");
+		    }
+		    move(file, tempFile, journal);
+		    remaining.put(tempFile, rename.getValue());
+		    originals.put(tempFile, file);
+		} catch (IOException moveIO) {
+		    failures.put(file, moveIO.toString());
+		    stuck.add(file);
+		}
+	    }
+	}
+    }
+
+    private static void move(File file, File renamedFile, RenameJournal journal) throws IOException {
+	Files.move(file.toPath(), renamedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+	journal.record(file, renamedFile);
+    }
+
+    /**
+     * Revert the renames from a journal, the last rename first
+     *
+     * @return the renames that could not be reverted, with the reason
+     */
+    static List<String> undo(List<File[]> journalRenames, RenameJournal journal) {
+	List<String> failed = new ArrayList<String>();
+	for (int i = journalRenames.size() - 1; i >= 0; i--) {
+	    File file = journalRenames.get(i)[0];
+	    File renamedFile = journalRenames.get(i)[1];
+	    try {
+		if (!renamedFile.exists()) {
+		    throw new IOException("the file " + renamedFile.getName() + " doesn't exist anymore");
+		}
+		if (file.exists()) {
+		    throw new IOException("the file " + file.getName() + " already exists");
+		}
+		move(renamedFile, file, journal);
+	    } catch (IOException moveIO) {
+		failed.add(renamedFile.getPath() + ": " + moveIO.toString());
+	    }
+	}
+	return failed;
+    }
+}
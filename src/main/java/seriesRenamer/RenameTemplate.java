@@ -0,0 +1,174 @@
+package seriesRenamer;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A rename format that has been parsed into literal text, variables and optional sections, so it doesn't have to be
+ * searched for every file. An optional section is the text between square brackets, it's only written when all
+ * variables in it have a value. The names of the variables are not case sensitive, a name between &lt; and &gt; that
+ * isn't a variable is written as it is.
+ */
+class RenameTemplate {
+    /**
+     * The variables that can be used in a format
+     */
+    enum Variable {
+	SERIES_NAME("SeriesName", true),
+	SEASON_NUMBER("SeasonNumber", true),
+	EPISODE_NUMBER("EpisodeNumber", true),
+	MULTIPART_EP_NUM("MultipartEpNum", false),
+	EPISODE_TITLE("EpisodeTitle", false),
+	MULTIPART_EP_TITLE("MultipartEpTitle", false),
+	FIRST_AIRED("FirstAired", false),
+	ABSOLUTE_NUMBER("AbsoluteNumber", false),
+	NETWORK("Network", false);
+
+	private String name;
+	private boolean required;
+
+	private Variable(String name, boolean required) {
+	    this.name = name;
+	    this.required = required;
+	}
+
+	/**
+	 * @return the variable as it's written in a format, e.g. &lt;SeriesName&gt;
+	 */
+	String getTag() {
+	    return "<" + name + ">";
+	}
+
+	/**
+	 * @return true if a file can't be renamed without this variable
+	 */
+	boolean isRequired() {
+	    return required;
+	}
+
+	static Variable fromName(String name) {
+	    for (Variable variable : values()) {
+		if (variable.name.equalsIgnoreCase(name)) {
+		    return variable;
+		}
+	    }
+	    return null;
+	}
+    }
+
+    private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+	@Override
+	protected StringBuilder initialValue() {
+	    return new StringBuilder();
+	}
+    };
+
+    private final List<Part> parts;
+    private final Set<Variable> variables = EnumSet.noneOf(Variable.class);
+
+    RenameTemplate(String format) {
+	parts = parse(format, 0, format.length());
+    }
+
+    /**
+     * @return true if the variable is used anywhere in the format
+     */
+    boolean uses(Variable variable) {
+	return variables.contains(variable);
+    }
+
+    /**
+     * @param values
+     *            the value of each variable, indexed by the ordinal of the variable. A null or empty value means the
+     *            variable isn't available.
+     */
+    String render(String[] values) {
+	StringBuilder name = BUILDER.get();
+	name.setLength(0);
+	render(parts, values, name);
+	return name.toString();
+    }
+
+    private static void render(List<Part> parts, String[] values, StringBuilder name) {
+	for (Part part : parts) {
+	    if (part.literal != null) {
+		name.append(part.literal);
+	    } else if (part.variable != null) {
+		String value = values[part.variable.ordinal()];
+		if (value != null) {
+		    name.append(value);
+		}
+	    } else if (isComplete(part.section, values)) {
+		render(part.section, values, name);
+	    }
+	}
+    }
+
+    private static boolean isComplete(List<Part> section, String[] values) {
+	for (Part part : section) {
+	    if (part.variable != null) {
+		String value = values[part.variable.ordinal()];
+		if (value == null || value.isEmpty()) {
+		    return false;
+		}
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Split the format between start and end into parts. Optional sections can't be nested, so a section is only
+     * looked for outside of one.
+     */
+    private List<Part> parse(String format, int start, int end) {
+	List<Part> result = new ArrayList<Part>();
+	boolean inSection = start > 0 && format.charAt(start - 1) == '[';
+	StringBuilder literal = new StringBuilder();
+	int pos = start;
+	while (pos < end) {
+	    char c = format.charAt(pos);
+	    int close;
+	    if (c == '<' && (close = format.indexOf('>', pos)) > 0 && close < end
+		    && Variable.fromName(format.substring(pos + 1, close)) != null) {
+		addLiteral(result, literal);
+		Variable variable = Variable.fromName(format.substring(pos + 1, close));
+		variables.add(variable);
+		result.add(new Part(null, variable, null));
+		pos = close + 1;
+	    } else if (c == '[' && !inSection && (close = format.indexOf(']', pos)) > 0) {
+		addLiteral(result, literal);
+		result.add(new Part(null, null, parse(format, pos + 1, close)));
+		pos = close + 1;
+	    } else {
+		literal.append(c);
+		pos++;
+	    }
+	}
+	addLiteral(result, literal);
+	return result;
+    }
+
+    private static void addLiteral(List<Part> result, StringBuilder literal) {
+	if (literal.length() > 0) {
+	    result.add(new Part(literal.toString(), null, null));
+	    literal.setLength(0);
+	}
+    }
+
+    /**
+     * Literal text, a variable or an optional section, only one of them is set
+     */
+    private static class Part {
+	private final String literal;
+	private final Variable variable;
+	private final List<Part> section;
+
+	Part(String literal, Variable variable, List<Part> section) {
+	    this.literal = literal;
+	    this.variable = variable;
+	    this.section = section;
+	}
+    }
+}
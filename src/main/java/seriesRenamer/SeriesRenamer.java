@@ -1,8 +1,11 @@
 package seriesRenamer;
 
 import com.moviejukebox.thetvdb.TheTVDB;
+import com.moviejukebox.thetvdb.cache.CacheType;
+import com.moviejukebox.thetvdb.cache.DiskCache;
 import com.moviejukebox.thetvdb.model.Episode;
 import com.moviejukebox.thetvdb.model.Series;
+import com.moviejukebox.thetvdb.model.SeriesBundle;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -11,10 +14,21 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Rename files that are episodes of a series to a format "&lt;Showname&gt; - &lt;seasonNumber&gt;x&lt;episodeNumber&gt; - &lt;episodeTitle&gt;" or a given custom format. All files in the provided directory are checked for a valid extension, as defined in the properties file, before being renamed. It is also possible to define pre-execution aliases to change the name of the series as it appears in the file to more closely match the title that will be scraped. Similarly, post-execution aliases can be defined to change the scraped name of the series to something less formal to be used in the renamed filename.</br>
@@ -33,51 +47,115 @@ public class SeriesRenamer {
     private static String postExecFile = "/etc/postExecAlias.txt";
     private static String logFile = "/var/log/seriesRenamer.log";
     private static String propsPath = "/etc/seriesRenamer.properties";
+    private static String cacheDir = "/cache";
+    private static String lastSyncFile = "/var/lastSync";
+    private static String offlineIndexFile = "/var/episodes.idx";
+    private static String journalDir = "/var/journal";
     private static Properties props = new Properties();
     private static String targetDir = "";
     private static String season = "((?i)s?[0-9]{1,2}?)";
     private static String episode = "((?i)[ex]?[0-9]{2})";
-    private static final String multipartSeason = "((?i)s?[0-9]{0,2})";
-    private static final String multipartEpisode = "((?i)[ex]?[0-9]{2,2})";
-    private static final String multipart = "(-?"+multipartSeason+multipartEpisode+")?";
-    private static String seasonNumbers = "";
-    private static final int seasonGroup = 1;
-    private static final int episodeGroup = 2;
-    private static final int multipartEpisodeGroup = 5;
-    private static final int SEASON = 0;
-    private static final int EPISODE = 1;
-    private static final int MPEPISODE = 2;
+    private static FilenameGrammar grammar = null;
+    private static RenameTemplate template = null;
+    private static FilenameSanitizer sanitizer = null;
+    private static volatile AliasTable preExecAliases = null;
+    private static volatile AliasTable postExecAliases = null;
+    /** The time the alias files were last checked for changes */
+    private static volatile long aliasesChecked = 0L;
+    private static final long ALIAS_CHECK_INTERVAL = 1000L;
+    private static AsyncLog asyncLog = null;
+    private static final long LOG_MAX_SIZE = 5L * 1024L * 1024L;
+    private static final int LOG_BACKUPS = 3;
     private static boolean quiet = false;
     private static boolean verbose = false;
     private static boolean recursive = false;
+    private static int maxDepth = Integer.MAX_VALUE;
+    private static List<String> excludes = new ArrayList<String>();
     private static String format = "<SeriesName> - <SeasonNumber>x<EpisodeNumber>[-<MultipartEpNum>][ - <EpisodeTitle>][-<MultipartEpTitle>]";
     private static String sortType = "default";
-    private static int state = -1;
     private static boolean fullSeries = false;
     private static boolean fullSeason = false;
-    private static boolean eptitleFound = false;
-    private static boolean multiEptitleFound = false;
-    private static boolean multiEpFound = true;
-    private static String seriesID = "";
-    private static List<Episode> batchEpisodes = null;
+    private static int batchThreshold = 5;
+    private static boolean zipBundles = true;
     private static boolean simulate;
+    private static boolean watch = false;
+    private static final long WATCH_DELAY = 10000L;
+    private static final int REQUEST_RATE = 10;
+    private static final int REQUEST_BURST = 10;
+    private static String undoJournal = "";
+    private static int jobs = 1;
+    private static final Series NO_SERIES = new Series();
+    private static ConcurrentHashMap<String, Future<Series>> resolvedSeries = new ConcurrentHashMap<String, Future<Series>>();
+    private static ConcurrentHashMap<String, AtomicInteger> seriesFileCounts = new ConcurrentHashMap<String, AtomicInteger>();
+    private static ConcurrentHashMap<String, Future<EpisodeIndex>> episodeIndexes = new ConcurrentHashMap<String, Future<EpisodeIndex>>();
+    private static boolean useCache = true;
+    private static boolean sync = false;
+    private static boolean offline = false;
+    private static OfflineIndex offlineIndex = null;
+    private static final long SECONDS_PER_DAY = 24L * 60L * 60L;
+    private static final CacheType[] SYNCED_TYPES = { CacheType.SERIES, CacheType.EPISODE, CacheType.EPISODE_LIST,
+	    CacheType.BANNERS, CacheType.ACTORS };
 
     public static void main(String[] args) {
 	processArgs(args);
 	log("Renaming started at: " + (new Timestamp(System.currentTimeMillis())).toString(), false);
+	if (!undoJournal.isEmpty()) {
+	    boolean undone = undoRenames(new File(undoJournal));
+	    log("Done undoing renames with SeriesRenamer at: " + (new Timestamp(System.currentTimeMillis())).toString(),
+		    false);
+	    System.exit(undone ? 0 : -1);
+	}
 	boolean propsLoaded = loadProperties();
 	if (!propsLoaded) {
 	    log("The properties could not be loaded", true);
 	    System.exit(-1);
 	}
-	season = props.getProperty("season");
-	episode = props.getProperty("episode");
-	seasonNumbers = "[^0-9(]" + season + episode + multipart + "[^0-9)]";
+	grammar = new FilenameGrammar(props, sortType.equalsIgnoreCase("absolute"));
+	template = compileFormat(format);
+	List<String> invalidEntries = new ArrayList<String>();
+	sanitizer = new FilenameSanitizer(props, invalidEntries);
+	for (String invalidEntry : invalidEntries) {
+	    log("The entry \"" + invalidEntry
+		    + "\" in replaceCharacters or reservedCharacters is not valid and will be ignored", true);
+	}
+	try {
+	    batchThreshold = Integer.parseInt(props.getProperty("batchThreshold", "5").trim());
+	} catch (NumberFormatException invalidNumber) {
+	    log("The batchThreshold property is not a valid number, the default of " + batchThreshold + " will be used",
+		    true);
+	}
+	zipBundles = Boolean.parseBoolean(props.getProperty("zipBundles", "true").trim());
+	if (jobs > 5) {
+	    // Keep a connection open for each job, instead of the default of 5
+	    new TheTVDB(APIKEY).setMaxConnections(jobs);
+	}
+	initRateLimit();
+	if (useCache || offline) {
+	    initOfflineIndex();
+	}
+	if (offline) {
+	    sync = false;
+	} else if (useCache) {
+	    initCache();
+	} else if (sync) {
+	    log("The cache is not used, so there is nothing to sync", true);
+	}
+	if (sync && targetDir.isEmpty()) {
+	    new TheTVDB(APIKEY).saveMirrors();
+	    log("Done syncing with SeriesRenamer at: " + (new Timestamp(System.currentTimeMillis())).toString(), false);
+	    System.exit(0);
+	}
 	File folder = new File((new File(targetDir)).getAbsolutePath());
-	renameFiles(folder);
+	boolean renamed = !renameFiles(folder, Collections.singletonList(folder)).isEmpty();
+	saveOfflineIndex();
+	new TheTVDB(APIKEY).saveMirrors();
+	log("Requests to TheTVDB.com: " + new TheTVDB(APIKEY).getRequestStatistics(), false);
+	if (watch) {
+	    watchFolder(folder);
+	}
 	log("Done renaming files with SeriesRenamer at: " + (new Timestamp(System.currentTimeMillis())).toString(),
 		false);
-	System.exit(state);
+	System.exit(renamed ? 0 : -1);
     }
 
     private static void processArgs(String[] args) {
@@ -176,7 +254,9 @@ public class SeriesRenamer {
     private static boolean optionRequiresValue(String option) {
 	boolean reqVal = false;
 	if (option.equals("c") || option.equals("config") || option.equals("f") || option.equals("format")
-		|| option.equals("o") || option.equals("output") || option.equals("s") || option.equals("sort")) {
+		|| option.equals("o") || option.equals("output") || option.equals("s") || option.equals("sort")
+		|| option.equals("j") || option.equals("jobs") || option.equals("undo") || option.equals("max-depth")
+		|| option.equals("exclude")) {
 	    reqVal = true;
 	}
 	return reqVal;
@@ -191,15 +271,33 @@ public class SeriesRenamer {
 	}
 	if (opt.equals("h") || opt.equals("help")) {
 	    System.out.print(
-		    "Name\n\tseriesRenamer - rename files that are episodes of a series\n\nSynopsis\n\tseriesRenamer [OPTIONS] FILE\n\tseriesRenamer [OPTIONS] [DIRECTORY]\n\nDescription\n\tRename files that are episodes of a series to a format \"<Showname> - <seasonNumber>x<episodeNumber> - <episodeTitle>\" or a given custom format.\n\n\tAll files in the DIRECTORY, or the provided file FILE, are checked for a valid extension, as defined in the properties file, before being renamed.\n\tIt is also possible to define pre-execution aliases to change the name of the series as it appears in the file to more closely match the title that will be scraped.Similarly, post-execution aliases can be defined to change the scraped name of the series to something less formal to be used in the renamed filename.\n\n\tThe data for renaming this correctly will be retrieved from TheTVDB.com.\n\n\tThis application assumes that the current file name starts with the show name, followed by the episode number in the format S01E01 or 1x01. It may contain dots instead of spaces, which can be defined in the properties file.\n\n\t-c, --config path\n\t\tspecify the path \"path\" where the configuration files will be stored\n\t\toverrides the default value\n\t\t(default: (user.home)/.SeriesRenamer or current directory if not available)\n\n\t-f, --format pattern\n\t\trename the episodes with a custom format \"pattern\". The pattern must be enclosed by double-quotes and should itself contain no double-quotes and can use the following variables:\n\t\t\t* <SeriesName> for the name of the series\n\t\t\t* <SeasonNumber> for the season number without any leading zeroes\n\t\t\t* <EpisodeNumber> for the episode number within a specific season with 1 leading zero\n\t\t\t* <EpisodeTitle> for the name of the episode\n\t\t\t* <multipartEpNum> for the episode number when a file represents multiple episodes\n\t\t\t* <multipartEpTitle> for the name of the episode when a file represents multiple episodes\n\t\tThese are the only variables currently available for use in the name. Note that the multipartEpTitle isn't written twice if the first one matches the second one.Optional sections are defined by square brackets which can not be nested. \n\t\t(default: \"<SeriesName> - <SeasonNumber>x<EpisodeNumber>[-<MultipartEpNum>][ - <EpisodeTitle>][-<MultipartEpTitle>]\")\n\n\t    --full-series\n\t\trename the episodes of an entire series at once. This can provide a performance enhancement, because it retrieves the information for all episodes at once, instead of one by one.\n\n\t    --full-season\n\t\trename the episodes of an entire season at once. Like --full-series, this can provide a performance enhancement by retrieving the information for all episodes (of the entire series) at once, but only looking through the episodes of a single season. It is preferred to use --full-series on the entire series than --full-season on multiple seasons of the series, from a performance perspective.\n\n\t-h, --help\n\t\tshow this help message\n\n\t-q, --quiet\n\t\tsuppress output to console\n\t\t(default: false)\n\n\t-r, --recursive\n\t\tsearch subfolders recursively to find files to rename\n\t\t(default: false)\n\n\t-s, --sort type\n\t\trename the episodes according to the provided sorting type.\n\t\tThis can be default, dvd or absolute.\n\t\t(default: default)\n\n\t    --simulate\n\t\tSimulate the renaming of the episodes. This shows new name of the files but doesn't actually rename them\n\t\t(default: false)\n\n\t    --version\n\t\tshow current version\n\n\t-v, --verbose\n\t\tshow information about what the program is doing\n\n\t--\n\t\tterminates all options, any options entered after this are not recognized as options and as such everything after this will be treated as DIRECTORY\n\n\tFILE\n\t\tthe name of the file representing the episode.If not provided, seriesRenamer will use the default value for DIRECTORY\n\tDIRECTORY\n\t\tthe absolute path to the directory which holds the files you wish to rename\n\t\t(default: current directory)\n\nAliases\n\tYou can define aliases for the program to use as series name before as well as after trying to rename the file, which will be matched using regular expressions. These are called pre-execution (preExec) and post-execution (postExec) aliases.\n\tThe preExec alias can be used to define an alias that can correctly be looked up on TheTVDB.com for a file that uses a different name for the show, e.g. using the alias \"Human Target (2010)\" for the files with \"Human Target\" as series name. The regex to match this could be \"human.target\"\n\tThe postExec alias can be used to define an alias that renames the file to something other than then official TheTVDB.com names (which have to be unique), e.g. using the alias \"Human Target\" for the series with \"Human Target (2010)\" as name. The regex to match this could be \"human.target.\\(2010\\)\". (Note that the brackets need to be escaped for this to remain a valid regular expression)\n\tNote that the examples show that you can use the aliases to make sure that the correct series is found (in this example, the original version of the series would be found instead of the 2010 remake) and then renamed similar to the original name (without a year indication).\n\n\tThe aliases have to be saved in the etc/ folder in the configuration directory that's being used (see -c, --config) under the names preExecAlias.txt and postExecAlias.txt for the preExec and postExec aliases respectively.\n\tEach alias is represented by a key-value pair in this .txt file and is written on a single line with the key and value separated by the equals (=) character.\n\tComments in the .properties files can be entered on a line with a pound (#) character at the beginning of the line.\n\tThe key for an alias entry is a regex that the series name must match, the value represents the (plain)text that it will be replaced with.\n\tNote that these aliases are used on the entire filename and that the regex matching is case-insensitive.\n\nExit status\n\tThe program exits with a status of zero if at least one file has been renamed or when viewing this help or the version info, otherwise it exits with a nonzero status. \n\nReporting bugs\n\tReport bugs to arucard21@gmail.com\n");
+		    "Name\n\tseriesRenamer - rename files that are episodes of a series\n\nSynopsis\n\tseriesRenamer [OPTIONS] FILE\n\tseriesRenamer [OPTIONS] [DIRECTORY]\n\nDescription\n\tRename files that are episodes of a series to a format \"<Showname> - <seasonNumber>x<episodeNumber> - <episodeTitle>\" or a given custom format.\n\n\tAll files in the DIRECTORY, or the provided file FILE, are checked for a valid extension, as defined in the properties file, before being renamed.\n\tIt is also possible to define pre-execution aliases to change the name of the series as it appears in the file to more closely match the title that will be scraped.Similarly, post-execution aliases can be defined to change the scraped name of the series to something less formal to be used in the renamed filename.\n\n\tThe data for renaming this correctly will be retrieved from TheTVDB.com.\n\n\tThis application assumes that the current file name starts with the show name, followed by the episode number in the format S01E01 or 1x01. It may contain dots instead of spaces, which can be defined in the properties file.\n\n\t-c, --config path\n\t\tspecify the path \"path\" where the configuration files will be stored\n\t\toverrides the default value\n\t\t(default: (user.home)/.SeriesRenamer or current directory if not available)\n\n\t    --exclude pattern\n\t\tleave out the files and folders that match the glob \"pattern\", e.g. \"*.sample.*\" or \"Extras\". The pattern is matched to the name and to the path below DIRECTORY. This option can be given more than once\n\n\t-f, --format pattern\n\t\trename the episodes with a custom format \"pattern\". The pattern must be enclosed by double-quotes and should itself contain no double-quotes and can use the following variables:\n\t\t\t* <SeriesName> for the name of the series\n\t\t\t* <SeasonNumber> for the season number without any leading zeroes\n\t\t\t* <EpisodeNumber> for the episode number within a specific season with 1 leading zero\n\t\t\t* <EpisodeTitle> for the name of the episode\n\t\t\t* <multipartEpNum> for the episode number when a file represents multiple episodes\n\t\t\t* <multipartEpTitle> for the name of the episode when a file represents multiple episodes\n\t\t\t* <FirstAired> for the date on which the episode first aired\n\t\t\t* <AbsoluteNumber> for the absolute episode number, counted over all seasons\n\t\t\t* <Network> for the network that airs the series\n\t\tThese are the only variables currently available for use in the name, their names are not case sensitive. Note that the multipartEpTitle isn't written twice if the first one matches the second one.Optional sections are defined by square brackets which can not be nested. \n\t\t(default: \"<SeriesName> - <SeasonNumber>x<EpisodeNumber>[-<MultipartEpNum>][ - <EpisodeTitle>][-<MultipartEpTitle>]\")\n\n\t    --full-series\n\t\tretrieve the information for all episodes of a series at once, for every series. By default this is only done for a series once more than batchThreshold files (as defined in the properties file) belong to it, the other episodes are retrieved one by one. A batchThreshold of -1 disables this. The information is retrieved as a zip file, unless the zipBundles property is false.\n\n\t    --full-season\n\t\tthe same as --full-series, the information for the entire series is retrieved at once and used for every season.\n\n\t-h, --help\n\t\tshow this help message\n\n\t-j, --jobs number\n\t\tlook up the information for \"number\" files at the same time. The files are still renamed one at a time, in the same order as with a single job. No more than requestRate requests per second are sent to each server of TheTVDB.com, after a pause up to requestBurst requests can be sent at once (as defined in the properties file, a requestRate of 0 removes the limit). They can be set for a single server by adding its name, e.g. requestRate.www.thetvdb.com. When the limit is reached, the lookups of single episodes and series go before the downloads of whole series, banners and actors. With more than 5 jobs a connection to TheTVDB.com is kept open for each job, this is set with the http.maxConnections system property for the whole Java process\n\t\t(default: 1, requestRate: 10, requestBurst: 10)\n\n\t    --max-depth number\n\t\tsearch subfolders recursively, but no more than \"number\" levels deep. A number of 0 only searches DIRECTORY itself\n\t\t(default: no limit)\n\n\t-q, --quiet\n\t\tsuppress output to console\n\t\t(default: false)\n\n\t-r, --recursive\n\t\tsearch subfolders recursively to find files to rename\n\t\t(default: false)\n\n\t-s, --sort type\n\t\trename the episodes according to the provided sorting type.\n\t\tThis can be default, dvd or absolute.\n\t\t(default: default)\n\n\t    --no-cache\n\t\tdon't use the cache and retrieve all information from TheTVDB.com. By default the information is cached in the cache/ folder in the configuration directory, which can be limited with the cacheSize property (in MB). The time that information is kept can be set per type of information with the properties cacheTTL.search, cacheTTL.series, cacheTTL.episode, cacheTTL.episode_list, cacheTTL.banners and cacheTTL.actors (in hours). The list of TheTVDB.com mirrors is also kept in the cache, with how fast and reliable each mirror has been, so a run doesn't have to retrieve it first. Once it's older than cacheTTL.mirrors (default: 168 hours) it's retrieved again while the files are renamed\n\t\t(default: false)\n\n\t    --offline\n\t\tdon't connect to TheTVDB.com, but only use the series and episode titles that have been retrieved before. These are saved in var/episodes.idx in the configuration directory by every run that uses the cache. Series can only be found by their name on TheTVDB.com or a name that has been searched for before\n\t\t(default: false)\n\n\t    --simulate\n\t\tSimulate the renaming of the episodes. This shows new name of the files but doesn't actually rename them\n\t\t(default: false)\n\n\t    --sync\n\t\tremove the series that have changed on TheTVDB.com since the last sync from the cache, so the rest of the cache can be used for longer. The time of the last sync is saved in the var/ folder in the configuration directory. As long as the last sync was less than a day ago, the series, episode, banners and actors information is kept for 30 days (unless the cacheTTL properties are set). When no DIRECTORY or FILE is given, nothing is renamed, so this can be run on its own every night\n\t\t(default: false)\n\n\t    --undo journal\n\t\trename the files from the journal \"journal\" back to their old names. Every run that renames files records them in a journal in the var/journal/ folder in the configuration directory, the path of the journal is shown at the end of the run\n\n\t    --version\n\t\tshow current version\n\n\t-v, --verbose\n\t\tshow information about what the program is doing\n\n\t    --watch\n\t\tkeep running after the files have been renamed and rename the files that are added to DIRECTORY (and its subfolders, with -r) from then on. A file is only renamed once it hasn't changed for watchDelay seconds (as defined in the properties file), so downloads aren't renamed before they're complete. The cache and the connections to TheTVDB.com are kept between the files\n\t\t(default: false, watchDelay: 10)\n\n\t--\n\t\tterminates all options, any options entered after this are not recognized as options and as such everything after this will be treated as DIRECTORY\n\n\tFILE\n\t\tthe name of the file representing the episode.If not provided, seriesRenamer will use the default value for DIRECTORY\n\tDIRECTORY\n\t\tthe absolute path to the directory which holds the files you wish to rename\n\t\t(default: current directory)\n\nAliases\n\tYou can define aliases for the program to use as series name before as well as after trying to rename the file, which will be matched using regular expressions. These are called pre-execution (preExec) and post-execution (postExec) aliases.\n\tThe preExec alias can be used to define an alias that can correctly be looked up on TheTVDB.com for a file that uses a different name for the show, e.g. using the alias \"Human Target (2010)\" for the files with \"Human Target\" as series name. The regex to match this could be \"human.target\"\n\tThe postExec alias can be used to define an alias that renames the file to something other than then official TheTVDB.com names (which have to be unique), e.g. using the alias \"Human Target\" for the series with \"Human Target (2010)\" as name. The regex to match this could be \"human.target.\\(2010\\)\". (Note that the brackets need to be escaped for this to remain a valid regular expression)\n\tNote that the examples show that you can use the aliases to make sure that the correct series is found (in this example, the original version of the series would be found instead of the 2010 remake) and then renamed similar to the original name (without a year indication).\n\n\tThe aliases have to be saved in the etc/ folder in the configuration directory that's being used (see -c, --config) under the names preExecAlias.txt and postExecAlias.txt for the preExec and postExec aliases respectively.\n\tEach alias is represented by a key-value pair in this .txt file and is written on a single line with the key and value separated by the equals (=) character.\n\tComments in the .properties files can be entered on a line with a pound (#) character at the beginning of the line.\n\tThe key for an alias entry is a regex that the series name must match, the value represents the (plain)text that it will be replaced with.\n\tNote that these aliases are used on the entire filename and that the regex matching is case-insensitive.\n\nExit status\n\tThe program exits with a status of zero if at least one file has been renamed or when viewing this help or the version info, otherwise it exits with a nonzero status. \n\nReporting bugs\n\tReport bugs to arucard21@gmail.com\n");
 	    System.exit(0);
 	}
+	if (opt.equals("j") || opt.equals("jobs")) {
+	    try {
+		jobs = Math.max(1, Integer.parseInt(val.trim()));
+	    } catch (NumberFormatException invalidNumber) {
+		log("The number of jobs " + val + " is not a valid number, the files will be renamed one at a time", true);
+	    }
+	}
 	if (opt.equals("q") || opt.equals("quiet")) {
 	    quiet = true;
 	}
 	if (opt.equals("r") || opt.equals("recursive")) {
 	    recursive = true;
 	}
+	if (opt.equals("max-depth")) {
+	    try {
+		maxDepth = Math.max(0, Integer.parseInt(val.trim()));
+		recursive = true;
+	    } catch (NumberFormatException invalidNumber) {
+		log("The maximum depth " + val + " is not a valid number, all subfolders will be searched", true);
+	    }
+	}
+	if (opt.equals("exclude")) {
+	    excludes.add(val);
+	}
 	if (opt.equals("s") || opt.equals("sort")) {
 	    sortType = val;
 	}
@@ -223,6 +321,21 @@ public class SeriesRenamer {
 	if (opt.equals("simulate")) {
 	    simulate = true;
 	}
+	if (opt.equals("watch")) {
+	    watch = true;
+	}
+	if (opt.equals("undo")) {
+	    undoJournal = val;
+	}
+	if (opt.equals("no-cache")) {
+	    useCache = false;
+	}
+	if (opt.equals("sync")) {
+	    sync = true;
+	}
+	if (opt.equals("offline")) {
+	    offline = true;
+	}
     }
 
     private static boolean loadProperties() {
@@ -244,6 +357,12 @@ public class SeriesRenamer {
 		defProps.setProperty("reservedCharacters", "/;\\\\;\\?;%;\\*;:;|;\";<;>");
 		defProps.setProperty("replaceCharacters", "/,-;\\\\,-");
 		defProps.setProperty("wordSeparators", "\\s;\\.;_");
+		defProps.setProperty("cacheSize", "64");
+		defProps.setProperty("batchThreshold", "5");
+		defProps.setProperty("zipBundles", "true");
+		defProps.setProperty("watchDelay", String.valueOf(WATCH_DELAY / 1000L));
+		defProps.setProperty("requestRate", String.valueOf(REQUEST_RATE));
+		defProps.setProperty("requestBurst", String.valueOf(REQUEST_BURST));
 		FileWriter propsWriter = new FileWriter(propsFile);
 		defProps.store(new BufferedWriter(propsWriter), "Properties for the SeriesRenamer");
 		propsWriter.close();
@@ -253,138 +372,405 @@ public class SeriesRenamer {
 	    propsReader.close();
 	} catch (FileNotFoundException noFile) {
 	    log("Properties file " + propsPath + " can not be read", true);
-	    StackTraceElement[] stacktrace = noFile.getStackTrace();
-	    String stString = String.valueOf(noFile.toString()) + "\n";
-	    for(StackTraceElement ste : stacktrace) {
-		stString = String.valueOf(stString) + "\t" + ste.toString() + "\n";
-	    }
-	    log(stString, true);
+	    log(getStackTrace(noFile), true);
 	} catch (IOException IO) {
 	    if (propsReader == null) {
 		log("Properties file " + propsPath + " can not be created", true);
 	    } else {
 		log("Properties could not be loaded from the properties file " + propsPath, true);
 	    }
-	    StackTraceElement[] stacktrace = IO.getStackTrace();
-	    String stString = String.valueOf(IO.toString()) + "\n";
-	    for(StackTraceElement ste : stacktrace) {
-		stString = String.valueOf(stString) + "\t" + ste.toString() + "\n";
-	    }
-	    log(stString, true);
+	    log(getStackTrace(IO), true);
 	} catch (Exception other) {
 	    log("An unexpected error has occurred, please see the stacktrace for more info", true);
-	    StackTraceElement[] stacktrace = other.getStackTrace();
-	    String stString = String.valueOf(other.toString()) + "\n";
-	    for(StackTraceElement ste : stacktrace) {
-		stString = String.valueOf(stString) + "\t" + ste.toString() + "\n";
-	    }
-	    log(stString, true);
+	    log(getStackTrace(other), true);
 	}
 	return (props != null && !props.isEmpty());
     }
 
-    private static void renameFiles(File target) {
-	File[] files = new File[1];
-	if (target.isDirectory()) {
-	    files = target.listFiles();
-	} else {
-	    files[0] = target;
+    /**
+     * Limit the requests to TheTVDB.com to requestRate per second, with bursts of requestBurst requests. Both can be
+     * set for a single host by adding the host to the property name, e.g. requestRate.www.thetvdb.com
+     */
+    private static void initRateLimit() {
+	TheTVDB tvdb = new TheTVDB(APIKEY);
+	try {
+	    double rate = Double.parseDouble(props.getProperty("requestRate", String.valueOf(REQUEST_RATE)).trim());
+	    int burst = Integer.parseInt(props.getProperty("requestBurst", String.valueOf(REQUEST_BURST)).trim());
+	    tvdb.setRateLimit(rate, burst);
+	    for (String name : props.stringPropertyNames()) {
+		if (name.startsWith("requestRate.") || name.startsWith("requestBurst.")) {
+		    String host = name.substring(name.indexOf('.') + 1);
+		    tvdb.setRateLimit(host, Double.parseDouble(props.getProperty("requestRate." + host,
+			    String.valueOf(rate)).trim()), Integer.parseInt(props.getProperty("requestBurst." + host,
+			    String.valueOf(burst)).trim()));
+		}
+	    }
+	} catch (NumberFormatException invalidNumber) {
+	    log("The requestRate and requestBurst properties could not be read, the default of " + REQUEST_RATE
+		    + " requests per second will be used: " + invalidNumber.getMessage(), true);
+	    tvdb.setRateLimit(REQUEST_RATE, REQUEST_BURST);
+	}
+    }
+
+    private static void initCache() {
+	TheTVDB tvdb = new TheTVDB(APIKEY);
+	try {
+	    long cacheSize = Long.parseLong(props.getProperty("cacheSize", "64").trim()) * 1024L * 1024L;
+	    DiskCache cache = new DiskCache(new File(String.valueOf(configPath) + cacheDir), cacheSize, 500);
+	    tvdb.setCache(cache);
+	    if (sync) {
+		syncCache(tvdb);
+	    }
+	    long lastSync = readLastSync();
+	    if (lastSync > 0 && System.currentTimeMillis() / 1000L - lastSync < SECONDS_PER_DAY) {
+		// Changed series are removed from the cache by the sync, so the rest doesn't have to expire as soon
+		for (CacheType type : SYNCED_TYPES) {
+		    cache.setTimeToLive(type, 30L * SECONDS_PER_DAY * 1000L);
+		}
+	    }
+	    for (CacheType type : CacheType.values()) {
+		String ttl = props.getProperty("cacheTTL." + type.name().toLowerCase());
+		if (ttl != null) {
+		    cache.setTimeToLive(type, Long.parseLong(ttl.trim()) * 60L * 60L * 1000L);
+		}
+	    }
+	} catch (NumberFormatException invalidNumber) {
+	    tvdb.setCache(null);
+	    log("The cache properties could not be read, the cache will not be used: " + invalidNumber.getMessage(),
+		    true);
+	}
+    }
+
+    /**
+     * Remove the series that have changed since the last sync from the cache and save the time of this sync
+     */
+    private static void syncCache(TheTVDB tvdb) {
+	long lastSync = readLastSync();
+	long syncTime = tvdb.sync(lastSync);
+	if (syncTime == lastSync) {
+	    log("The updates could not be retrieved from TheTVDB.com, the cache has not been synced", true);
+	    return;
 	}
-	for (int i = 0; i < files.length; i++) {
-	    if (files[i].isDirectory()) {
-		if (recursive) {
-		    renameFiles(files[i]);
+	File syncFile = new File(String.valueOf(configPath) + lastSyncFile);
+	try {
+	    File syncDir = syncFile.getParentFile();
+	    if (!syncDir.exists() && !syncDir.mkdirs()) {
+		log("The directory for the last sync file " + lastSyncFile + " could not be created", true);
+	    }
+	    FileWriter syncWriter = new FileWriter(syncFile);
+	    syncWriter.write(String.valueOf(syncTime));
+	    syncWriter.close();
+	    log("The cache has been synced with TheTVDB.com", false);
+	} catch (IOException IO) {
+	    log("The time of the last sync could not be saved to " + lastSyncFile + ": " + IO.getMessage(), true);
+	}
+    }
+
+    /**
+     * @return the server time of the last sync in seconds, or 0 if it hasn't been synced before
+     */
+    private static long readLastSync() {
+	File syncFile = new File(String.valueOf(configPath) + lastSyncFile);
+	if (!syncFile.exists()) {
+	    return 0;
+	}
+	BufferedReader syncReader = null;
+	try {
+	    syncReader = new BufferedReader(new FileReader(syncFile));
+	    String line = syncReader.readLine();
+	    return line == null ? 0 : Long.parseLong(line.trim());
+	} catch (IOException IO) {
+	    log("The time of the last sync could not be read from " + lastSyncFile + ": " + IO.getMessage(), true);
+	} catch (NumberFormatException invalidNumber) {
+	    log("The time of the last sync in " + lastSyncFile + " is not valid, the cache will be synced completely",
+		    true);
+	} finally {
+	    if (syncReader != null) {
+		try {
+		    syncReader.close();
+		} catch (IOException ignore) {
+		    // already closed
 		}
+	    }
+	}
+	return 0;
+    }
+
+    private static void initOfflineIndex() {
+	try {
+	    offlineIndex = OfflineIndex.open(new File(String.valueOf(configPath) + offlineIndexFile));
+	} catch (IOException IO) {
+	    log("The offline index could not be read from " + offlineIndexFile + ": " + IO.getMessage(), true);
+	    if (offline) {
+		System.exit(-1);
+	    }
+	}
+    }
+
+    private static void saveOfflineIndex() {
+	if (offlineIndex == null || offline) {
+	    return;
+	}
+	try {
+	    offlineIndex.save();
+	} catch (IOException IO) {
+	    log("The offline index could not be saved to " + offlineIndexFile + ": " + IO.getMessage(), true);
+	}
+    }
+
+    /**
+     * Rename the files in the targets, which are files or directories below the root
+     * 
+     * @return the files with their new names
+     */
+    private static List<File> renameFiles(File root, List<File> targets) {
+	List<RenameContext> contexts = resolveFiles(root, targets);
+	RenamePlan plan = new RenamePlan();
+	for (RenameContext context : contexts) {
+	    planRename(context, plan);
+	}
+	for (Map.Entry<File, File> collision : plan.removeCollisions().entrySet()) {
+	    log("The file " + collision.getKey().getName() + " was not renamed because the file "
+		    + collision.getValue().getName() + " already exists", true);
+	}
+	if (simulate) {
+	    for (Map.Entry<File, File> rename : plan.getRenames().entrySet()) {
+		log("The file:\t\t\t" + rename.getKey().getName() + "\nwould have been renamed to:\t"
+			+ rename.getValue().getName(), false);
+	    }
+	    return new ArrayList<File>(plan.getRenames().values());
+	}
+	RenameJournal journal = new RenameJournal(new File(String.valueOf(configPath) + journalDir, "rename-"
+		+ new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".journal"));
+	plan.execute(journal);
+	List<File> renamed = new ArrayList<File>();
+	for (Map.Entry<File, File> rename : plan.getRenames().entrySet()) {
+	    String name = rename.getKey().getName();
+	    String failure = plan.getFailure(rename.getKey());
+	    if (failure == null) {
+		log("The file:\t\t" + name + "\nhas been renamed to:\t" + rename.getValue().getName(), false);
+		renamed.add(rename.getValue());
 	    } else {
-		eptitleFound = false;
-		multiEptitleFound = false;
-		multiEpFound = false;
-		seriesID = "";
-		String name = files[i].getName();
-		if (checkFileExtension(name)) {
-		    String newName = getNewName(name);
-		    newName = newName.replaceAll("&quot;", "\"");
-		    newName = newName.replaceAll("&amp;", "&");
-		    newName = newName.replaceAll("&apos;", "'");
-		    newName = newName.replaceAll("&lt;", "<");
-		    newName = newName.replaceAll("&gt;", ">");
-		    String[] replacePairs = props.getProperty("replaceCharacters").split(";");
-		    for (String replacePair : replacePairs) {
-			String[] replaceKeyValue = replacePair.split(",");
-			String key = replaceKeyValue[0].trim();
-			String value = replaceKeyValue[1].trim();
-			newName = newName.replaceAll(key, value);
-		    }
-		    String[] reservedChars = props.getProperty("reservedCharacters").split(";");
-		    for (String reservedChar : reservedChars) {
-			newName = newName.replaceAll(reservedChar, "");
+		log("The file " + name + " could not be renamed to " + rename.getValue().getName() + ": " + failure,
+			true);
+	    }
+	}
+	closeJournal(journal);
+	return renamed;
+    }
+
+    /**
+     * Keep renaming the files that are added to the folder, until the program is stopped. Each batch of files that
+     * settled is handled like a separate run, except that the cache, the connections and the configuration are kept.
+     */
+    private static void watchFolder(final File folder) {
+	long quietPeriod = WATCH_DELAY;
+	try {
+	    quietPeriod = Long.parseLong(props.getProperty("watchDelay", String.valueOf(WATCH_DELAY / 1000L)).trim())
+		    * 1000L;
+	} catch (NumberFormatException invalidNumber) {
+	    log("The watchDelay property is not a valid number, the default of " + (WATCH_DELAY / 1000L)
+		    + " seconds will be used", true);
+	}
+	log("Watching " + folder.getPath() + " for new files", false);
+	try {
+	    final FolderWatcher watcher = new FolderWatcher(folder.toPath(), recursive ? maxDepth : 0, quietPeriod);
+	    watcher.watch(new FolderWatcher.Handler() {
+		public void changed(List<File> files) {
+		    log("Renaming started at: " + (new Timestamp(System.currentTimeMillis())).toString(), false);
+		    resolvedSeries.clear();
+		    seriesFileCounts.clear();
+		    episodeIndexes.clear();
+		    for (File renamedFile : renameFiles(folder, files)) {
+			watcher.ignore(renamedFile);
 		    }
-		    if (!newName.equals(name)) {
-			File renamedFile = new File(files[i].getParent(), newName);
-			if (eptitleFound && (!multiEpFound || multiEptitleFound) && !renamedFile.exists()) {
-			    if (simulate) {
-				log("The file:\t\t\t" + name + "\nwould have been renamed to:\t" + newName, false);
-				state = 0;
-			    } else if (files[i].renameTo(renamedFile)) {
-				log("The file:\t\t" + name + "\nhas been renamed to:\t" + newName, false);
-				state = 0;
-			    }
-			} else {
-			    log("The file " + name
-				    + " was not renamed because the episode title could not be found or the file already exists",
-				    true);
+		    saveOfflineIndex();
+		    new TheTVDB(APIKEY).saveMirrors();
+		    log("Requests to TheTVDB.com: " + new TheTVDB(APIKEY).getRequestStatistics(), false);
+		    log("Done renaming files with SeriesRenamer at: "
+			    + (new Timestamp(System.currentTimeMillis())).toString(), false);
+		}
+
+		public void failed(File file, IOException error) {
+		    log("The folder " + file.getPath() + " could not be watched: " + error, true);
+		}
+	    });
+	} catch (IOException IO) {
+	    log("The folder " + folder.getPath() + " could not be watched: " + IO, true);
+	    System.exit(-1);
+	}
+    }
+
+    /**
+     * Look up the new names for the files, using multiple threads if more than one job was requested. The files are
+     * looked up while the directory is being searched. The results are returned in the same order as the files were
+     * found.
+     */
+    private static List<RenameContext> resolveFiles(File root, List<File> targets) {
+	final List<RenameContext> contexts = new ArrayList<RenameContext>();
+	final List<File> files = new ArrayList<File>();
+	final List<Future<RenameContext>> results = new ArrayList<Future<RenameContext>>();
+	final ExecutorService executor = jobs > 1 ? Executors.newFixedThreadPool(jobs) : null;
+	FileScanner scanner = new FileScanner(grammar, recursive ? maxDepth : 0, excludes);
+	try {
+	    FileScanner.Handler handler = new FileScanner.Handler() {
+		public void found(final File file) {
+		    if (executor == null) {
+			try {
+			    contexts.add(resolveFile(file));
+			} catch (RuntimeException error) {
+			    logResolveError(file, error);
 			}
-		    } else {
-			log("The file " + name + " was already correctly named", false);
+			return;
 		    }
-		} else {
-		    log("The file:\t\t" + name + " did not have a valid extension and was not renamed", false);
+		    files.add(file);
+		    results.add(executor.submit(new Callable<RenameContext>() {
+			public RenameContext call() {
+			    return resolveFile(file);
+			}
+		    }));
+		}
+
+		public void skipped(File file) {
+		    log("The file:\t\t" + file.getName() + " did not have a valid extension and was not renamed", false);
+		}
+
+		public void failed(File file, IOException error) {
+		    log("The file " + file.getPath() + " could not be read: " + error, true);
+		}
+	    };
+	    for (File target : targets) {
+		try {
+		    scanner.scan(root.toPath(), target.toPath(), handler);
+		} catch (IOException IO) {
+		    log("The files in " + target.getPath() + " could not be searched: " + IO, true);
+		}
+	    }
+	    for (int i = 0; i < results.size(); i++) {
+		try {
+		    contexts.add(results.get(i).get());
+		} catch (ExecutionException error) {
+		    logResolveError(files.get(i), error.getCause());
 		}
 	    }
+	} catch (InterruptedException interrupted) {
+	    log("Renaming was interrupted before all files were looked up", true);
+	    Thread.currentThread().interrupt();
+	} finally {
+	    if (executor != null) {
+		executor.shutdownNow();
+	    }
+	}
+	return contexts;
+    }
+
+    private static RenameContext resolveFile(File file) {
+	RenameContext context = new RenameContext(file);
+	context.setNewName(sanitizer.sanitize(getNewName(file.getName(), context)));
+	return context;
+    }
+
+    private static void logResolveError(File file, Throwable error) {
+	log("The file " + file.getName() + " was not renamed because an error occurred while looking it up: " + error,
+		true);
+    }
+
+    /**
+     * Add the rename of a single file that has been resolved to the plan. This is always done on the main thread, in
+     * the order that the files were found, so the outcome doesn't depend on the number of jobs. When several files get
+     * the same name, the first one is renamed.
+     */
+    private static void planRename(RenameContext context, RenamePlan plan) {
+	File file = context.getFile();
+	String name = file.getName();
+	String newName = context.getNewName();
+	if (newName.equals(name)) {
+	    log("The file " + name + " was already correctly named", false);
+	    return;
+	}
+	if (!context.isResolved() || !plan.add(file, new File(file.getParent(), newName))) {
+	    log("The file " + name
+		    + " was not renamed because the episode title could not be found or the file already exists", true);
+	}
+    }
+
+    private static void closeJournal(RenameJournal journal) {
+	try {
+	    journal.close();
+	} catch (IOException IO) {
+	    log("The journal " + journal.getFile().getPath() + " could not be closed: " + IO.getMessage(), true);
 	}
+	if (journal.getError() != null) {
+	    log("The renames could not all be recorded in the journal " + journal.getFile().getPath() + ": "
+		    + journal.getError().getMessage(), true);
+	} else if (journal.isWritten()) {
+	    log("The renames have been recorded in " + journal.getFile().getPath()
+		    + ", they can be reverted with --undo " + journal.getFile().getPath(), false);
+	}
+    }
+
+    /**
+     * Rename the files from a journal back to their old names. The renames of the undo are recorded in a journal of
+     * their own.
+     * 
+     * @return true if at least one file has been renamed back
+     */
+    private static boolean undoRenames(File journalFile) {
+	List<File[]> renames;
+	try {
+	    renames = RenameJournal.read(journalFile);
+	} catch (IOException IO) {
+	    log("The journal " + journalFile.getPath() + " could not be read: " + IO.getMessage(), true);
+	    return false;
+	}
+	RenameJournal journal = new RenameJournal(new File(String.valueOf(configPath) + journalDir, "undo-"
+		+ new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".journal"));
+	List<String> failed = RenamePlan.undo(renames, journal);
+	for (String failure : failed) {
+	    log("The rename could not be undone for " + failure, true);
+	}
+	log((renames.size() - failed.size()) + " of the " + renames.size() + " renames in " + journalFile.getPath()
+		+ " have been undone", false);
+	closeJournal(journal);
+	return failed.size() < renames.size();
     }
 
     public static String getNewName(String name) {
+	return getNewName(name, new RenameContext(new File(name)));
+    }
+
+    private static String getNewName(String name, RenameContext context) {
 	name = handleAliases(name, true);
-	String show = getSeriesName(name);
-	String[] seasonEp = getEpisodeNumbers(name);
-	String seasonNum = seasonEp[SEASON];
-	String episodeNum = seasonEp[EPISODE];
-	String mpEpisodeNum = seasonEp[MPEPISODE];
-	if ((fullSeason || fullSeries) && batchEpisodes == null) {
-	    if (fullSeries) {
-		batchEpisodes = getEpisodes(show, "");
-	    } else if (fullSeason) {
-		batchEpisodes = getEpisodes(show, seasonNum);
-	    }
+	FilenameGrammar.ParsedName parsedName = grammar.parse(name);
+	if (parsedName == null) {
+	    throw new IllegalArgumentException("The series name and episode number could not be parsed from the filename");
 	}
-	String episodeTitle = getEpisodeTitle(show, seasonNum, episodeNum);
+	String show = getSeriesName(parsedName.getSeriesName(), context);
+	String seasonNum = parsedName.getSeason();
+	String episodeNum = parsedName.getEpisode();
+	String mpEpisodeNum = parsedName.getMultipartEpisode();
+	context.setEpisodeIndex(getEpisodeIndex(show, context.getSeriesID()));
+	Episode episode = getEpisode(show, seasonNum, episodeNum, context);
+	String episodeTitle = getEpisodeName(episode);
 	if (!episodeTitle.isEmpty()) {
-	    eptitleFound = true;
-	}
-	String[] nameArr = name.split("\\.");
-	String extension = "";
-	if (nameArr.length > 0) {
-	    extension = nameArr[nameArr.length - 1];
+	    context.setEptitleFound(true);
 	}
+	String extension = FilenameGrammar.getExtension(name);
 	String multiEpTitle = "";
 	if (mpEpisodeNum != null && !mpEpisodeNum.isEmpty()) {
-	    multiEpTitle = getEpisodeTitle(show, seasonNum, mpEpisodeNum);
-	    multiEpFound = true;
-	    if (!multiEpTitle.equals("") && multiEpTitle != null) {
-		multiEptitleFound = true;
+	    multiEpTitle = getEpisodeName(getEpisode(show, seasonNum, mpEpisodeNum, context));
+	    context.setMultiEpFound(true);
+	    if (!multiEpTitle.isEmpty()) {
+		context.setMultiEptitleFound(true);
 		String episodeCompare = episodeTitle.replaceAll("\\(1\\)", "").trim();
 		String mpEpisodeCompare = multiEpTitle.replaceAll("\\(2\\)", "").trim();
 		if (episodeCompare.equalsIgnoreCase(mpEpisodeCompare)) {
 		    episodeTitle = episodeTitle.replaceAll("\\(1\\)", "(1-2)").trim();
 		    multiEpTitle = "";
 		}
-	    } else {
-		multiEpTitle = "";
 	    }
 	}
 	show = handleAliases(show, false);
-	String newName = format;
 	if (episodeNum.length() < 1) {
 	    episodeNum = "00" + episodeNum;
 	} else if (episodeNum.length() == 1) {
@@ -395,72 +781,47 @@ public class SeriesRenamer {
 	} else if (mpEpisodeNum != null && mpEpisodeNum.length() == 1) {
 	    mpEpisodeNum = "0" + mpEpisodeNum;
 	}
-	newName = replaceTemplateVars(newName, "<SeriesName>", show, false);
-	newName = replaceTemplateVars(newName, "<SeasonNumber>", seasonNum, false);
-	newName = replaceTemplateVars(newName, "<EpisodeNumber>", episodeNum, false);
-	newName = replaceTemplateVars(newName, "<MultipartEpNum>", mpEpisodeNum, true);
-	newName = replaceTemplateVars(newName, "<EpisodeTitle>", episodeTitle, true);
-	newName = replaceTemplateVars(newName, "<MultipartEpTitle>", multiEpTitle, true);
-	return String.valueOf(newName) + "." + extension;
+	String[] values = new String[RenameTemplate.Variable.values().length];
+	values[RenameTemplate.Variable.SERIES_NAME.ordinal()] = show;
+	values[RenameTemplate.Variable.SEASON_NUMBER.ordinal()] = seasonNum;
+	values[RenameTemplate.Variable.EPISODE_NUMBER.ordinal()] = episodeNum;
+	values[RenameTemplate.Variable.MULTIPART_EP_NUM.ordinal()] = mpEpisodeNum;
+	values[RenameTemplate.Variable.EPISODE_TITLE.ordinal()] = episodeTitle;
+	values[RenameTemplate.Variable.MULTIPART_EP_TITLE.ordinal()] = multiEpTitle;
+	if (episode != null) {
+	    values[RenameTemplate.Variable.FIRST_AIRED.ordinal()] = episode.getFirstAired();
+	    values[RenameTemplate.Variable.ABSOLUTE_NUMBER.ordinal()] = episode.getAbsoluteNumber();
+	}
+	values[RenameTemplate.Variable.NETWORK.ordinal()] = context.getNetwork();
+	for (RenameTemplate.Variable variable : RenameTemplate.Variable.values()) {
+	    String value = values[variable.ordinal()];
+	    if (variable.isRequired() && (value == null || value.isEmpty())) {
+		log("The value for " + variable.getTag() + " could not be found", true);
+	    }
+	}
+	return template.render(values) + "." + extension;
     }
 
-    private static String replaceTemplateVars(String template, String templVar, String templVarVal, boolean optional) {
-	if (templVarVal == null || templVarVal.isEmpty()) {
-	    if (optional) {
-		template = template.replaceAll("\\[[^\\[]*?" + templVar + "[^\\]]*?\\]", "");
-	    } else {
-		log("The value for " + templVar + " could not be found", true);
-	    }
-	} else if (template.matches(".*(" + templVar + ")+?.*")) {
-	    if (optional) {
-		Pattern brackets = Pattern.compile("\\[([^\\[]*?" + templVar + "[^\\]]*?)\\]");
-		Matcher brMatch = brackets.matcher(template);
-		brMatch.find();
-		String brRepl = "";
-		try {
-		    brRepl = brMatch.group(1);
-		    template = brMatch.replaceAll(brRepl);
-		} catch (IllegalStateException noMatch) {
-		    log("A format has been provided with an optional template variable that's not contained within brackets",
-			    true);
-		}
+    /**
+     * Parse the format into a template, the required variables that are missing from it are reported once
+     */
+    private static RenameTemplate compileFormat(String format) {
+	RenameTemplate compiled = new RenameTemplate(format);
+	for (RenameTemplate.Variable variable : RenameTemplate.Variable.values()) {
+	    if (variable.isRequired() && !compiled.uses(variable)) {
+		log("No " + variable.getTag() + " was provided in the format template", true);
 	    }
-	    template = template.replaceFirst(templVar, Matcher.quoteReplacement(templVarVal));
-	} else {
-	    log("No " + templVar + " was provided in the format template", true);
 	}
-	return template;
+	return compiled;
     }
 
-    private static String getSeriesName(String name) {
-	String seriesNameFile = "";
-	String seriesRegex = "";
-	if (sortType.equalsIgnoreCase("absolute")) {
-	    seriesRegex = "(.*?)\\s?-?\\s?[^0-9(]" + episode + "(-?" + multipartEpisode + ")?" + "[^0-9)]"
-		    + ".*";
-	} else {
-	    seriesRegex = "(.*?)\\s?-?\\s?" + seasonNumbers + ".*";
-	}
-	Pattern seriesPattern = Pattern.compile(seriesRegex);
-	Matcher seriesMatcher = seriesPattern.matcher(name);
-	if (seriesMatcher.find()) {
-	    seriesNameFile = seriesMatcher.group(1);
-	} else {
-	    log("The series name could not be parsed from the filename", true);
-	}
-	seriesNameFile = seriesNameFile.replaceAll(props.getProperty("wordSeparators").replaceAll(";", "|"), " ")
-		.trim();
-	String[] wordSeparators = props.getProperty("wordSeparators").split(";");
-	for(String wordSeparator : wordSeparators) {
-	    seriesNameFile = seriesNameFile.replaceAll(wordSeparator, " ");
-	}
-	TheTVDB tvdb = new TheTVDB(APIKEY);
-	List<Series> allSeries = tvdb.searchSeries(seriesNameFile, "en");
+    private static String getSeriesName(String seriesNameFile, RenameContext context) {
+	Series series = findSeries(seriesNameFile);
 	String seriesName = "";
-	if (allSeries.size() > 0) {
-	    Series series = (Series) allSeries.get(0);
+	if (series != null) {
 	    seriesName = series.getSeriesName();
-	    seriesID = series.getId();
+	    context.setSeriesID(series.getId());
+	    context.setNetwork(series.getNetwork());
 	}
 	if (isSameSeries(seriesNameFile, seriesName)) {
 	    return seriesName;
@@ -468,166 +829,189 @@ public class SeriesRenamer {
 	return "";
     }
 
-    private static String[] getEpisodeNumbers(String name) {
-	String numbersRegex = "";
-	if (sortType.equalsIgnoreCase("absolute")) {
-	    numbersRegex = "[^0-9(]" + episode + "(-?" + multipartEpisode + ")?" + "[^0-9)]";
-	} else {
-	    numbersRegex = seasonNumbers;
-	}
-	Pattern seasonAndEp = Pattern.compile(numbersRegex);
-	Matcher sAndEMatch = seasonAndEp.matcher(name);
-	String seriesNameFile = "";
-	String seriesRegex = "";
-	if (sortType.equalsIgnoreCase("absolute")) {
-	    seriesRegex = "(.*?)\\s?-?\\s?[^0-9(]" + episode + "(-?" + multipartEpisode + ")?" + "[^0-9)]"
-		    + ".*";
-	} else {
-	    seriesRegex = "(.*?)\\s?-?\\s?" + seasonNumbers + ".*";
-	}
-	Pattern seriesPattern = Pattern.compile(seriesRegex);
-	Matcher seriesMatcher = seriesPattern.matcher(name);
-	String[] numsArr = new String[3];
-	if (sAndEMatch.find()) {
-	    if (seriesMatcher.find()) {
-		seriesNameFile = seriesMatcher.group(1);
-		seriesNameFile = seriesNameFile
-			.replaceAll(props.getProperty("wordSeparators").replaceAll(";", "|"), " ").trim();
-		String[] wordSeparators = props.getProperty("wordSeparators").split(";");
-		for(String wordSeparator : wordSeparators) {
-		    seriesNameFile = seriesNameFile.replaceAll(wordSeparator, " ");
-		}
-		Pattern digits = Pattern.compile("[0-9]{3,4}");
-		Matcher digitMatch = digits.matcher(seriesNameFile);
-		while (digitMatch.find()) {
-		    String matchedDigits = digitMatch.group();
-		    if (!seriesNameFile.contains(matchedDigits) && name.contains(matchedDigits)) {
-			sAndEMatch.find(sAndEMatch.end() - 1);
+    /**
+     * Search for the series on TheTVDB, each name is only searched once per run. Names that weren't found are
+     * remembered as well.
+     * 
+     * @return the best matching series, or null if the series could not be found
+     */
+    private static Series findSeries(final String seriesNameFile) {
+	Series series = getOnce(resolvedSeries, seriesNameFile.toLowerCase(), new Callable<Series>() {
+	    public Series call() {
+		if (offline) {
+		    Series found = offlineIndex.findSeries(seriesNameFile);
+		    if (found == null) {
+			log("The series " + seriesNameFile + " is not in the offline index", true);
+			return NO_SERIES;
 		    }
+		    return found;
 		}
+		TheTVDB tvdb = new TheTVDB(APIKEY);
+		List<Series> allSeries = tvdb.searchSeries(seriesNameFile, "en");
+		if (allSeries.isEmpty()) {
+		    return NO_SERIES;
+		}
+		Series found = new Series();
+		found.setId(allSeries.get(0).getId());
+		found.setSeriesName(allSeries.get(0).getSeriesName());
+		found.setNetwork(allSeries.get(0).getNetwork());
+		if (offlineIndex != null) {
+		    offlineIndex.addSeries(seriesNameFile, found);
+		}
+		return found;
 	    }
-	    numsArr[0] = sAndEMatch.group(seasonGroup);
-	    numsArr[0] = numsArr[0].trim().replaceFirst("^(?i)s*", "");
-	    if (numsArr[0].length() > 1) {
-		numsArr[0] = numsArr[0].trim().replaceFirst("^(?i)0*", "");
+	});
+	if (series == NO_SERIES) {
+	    return null;
+	}
+	return series;
+    }
+
+    private static String getEpisodeName(Episode episode) {
+	if (episode == null || episode.getEpisodeName() == null) {
+	    return "";
+	}
+	return episode.getEpisodeName();
+    }
+
+    /**
+     * @return the details of the episode, or null if the episode could not be found
+     */
+    private static Episode getEpisode(String show, String season, String episode, RenameContext context) {
+	int seasonNum = season.isEmpty() ? 0 : Integer.valueOf(season).intValue();
+	int episodeNum = Integer.valueOf(episode).intValue();
+	String seriesID = context.getSeriesID();
+	if (seriesID.isEmpty()) {
+	    return null;
+	}
+	EpisodeIndex index = context.getEpisodeIndex();
+	if (index != null) {
+	    Episode ep = null;
+	    if (sortType.equalsIgnoreCase("default")) {
+		ep = index.getEpisode(seasonNum, episodeNum);
+	    } else if (sortType.equalsIgnoreCase("dvd")) {
+		ep = index.getDVDEpisode(seasonNum, episodeNum);
+	    } else if (sortType.equalsIgnoreCase("absolute")) {
+		ep = index.getAbsoluteEpisode(episodeNum);
 	    }
-	    numsArr[1] = sAndEMatch.group(episodeGroup);
-	    numsArr[1] = numsArr[1].trim().replaceFirst("^(?i)[ex]*", "");
-	    if (numsArr[1].length() > 1) {
-		numsArr[1] = numsArr[1].trim().replaceFirst("^(?i)0*", "");
+	    if (ep != null) {
+		return ep;
 	    }
-	    numsArr[2] = sAndEMatch.group(multipartEpisodeGroup);
-	    if (numsArr[2] != null && !numsArr[2].isEmpty()) {
-		numsArr[2] = numsArr[2].trim().replaceFirst("^[ex]?0*", "");
+	    log("The episode " + show + " - " + season + "x" + episode
+		    + " is not contained in the episode list, it will be retrieved separately", false);
+	}
+	if (offline) {
+	    return getOfflineEpisode(show, season, episode, seriesID);
+	}
+	TheTVDB tvdb = new TheTVDB(APIKEY);
+	Episode epDetails = null;
+	if (sortType.equalsIgnoreCase("default")) {
+	    epDetails = tvdb.getEpisode(seriesID, seasonNum, episodeNum, "en");
+	} else if (sortType.equalsIgnoreCase("dvd")) {
+	    epDetails = tvdb.getDVDEpisode(seriesID, seasonNum, episodeNum, "en");
+	} else if (sortType.equalsIgnoreCase("absolute")) {
+	    epDetails = tvdb.getAbsoluteEpisode(seriesID, episodeNum, "en");
+	}
+	if (epDetails != null) {
+	    if (offlineIndex != null) {
+		offlineIndex.addEpisode(seriesID, epDetails);
 	    }
-	    return numsArr;
+	    return epDetails;
 	}
+	log("Episode details for " + show + " - " + season + "x" + episode + " could not be retrieved", true);
 	return null;
     }
 
-    private static String getEpisodeTitle(String show, String season, String episode) {
-	int seasonNum = Integer.valueOf(season).intValue();
+    /**
+     * The offline index only contains the titles, so the other details of the episode are left empty
+     */
+    private static Episode getOfflineEpisode(String show, String season, String episode, String seriesID) {
+	int seasonNum = season.isEmpty() ? 0 : Integer.valueOf(season).intValue();
 	int episodeNum = Integer.valueOf(episode).intValue();
-	if (batchEpisodes == null) {
-	    TheTVDB tvdb = new TheTVDB(APIKEY);
-	    if (!seriesID.isEmpty()) {
-		Episode epDetails = null;
-		if (sortType.equalsIgnoreCase("default")) {
-		    epDetails = tvdb.getEpisode(seriesID, seasonNum, episodeNum, "en");
-		} else if (sortType.equalsIgnoreCase("dvd")) {
-		    epDetails = tvdb.getDVDEpisode(seriesID, seasonNum, episodeNum, "en");
-		} else if (sortType.equalsIgnoreCase("absolute")) {
-		    log("Renaming according to absolute numbering scheme is not yet supported", true);
-		}
-		if (epDetails != null) {
-		    return epDetails.getEpisodeName();
-		}
-		log("Episode details for " + show + " - " + season + "x" + episode + " could not be retrieved", true);
-		return "";
-	    }
-	    return "";
+	String title = null;
+	if (sortType.equalsIgnoreCase("default")) {
+	    title = offlineIndex.getEpisodeName(seriesID, OfflineIndex.AIRED, seasonNum, episodeNum);
+	} else if (sortType.equalsIgnoreCase("dvd")) {
+	    title = offlineIndex.getEpisodeName(seriesID, OfflineIndex.DVD, seasonNum, episodeNum);
+	} else if (sortType.equalsIgnoreCase("absolute")) {
+	    title = offlineIndex.getEpisodeName(seriesID, OfflineIndex.ABSOLUTE, 0, episodeNum);
 	}
-	if (batchEpisodes != null) {
-	    for (Episode ep : batchEpisodes) {
-		if (ep.getSeriesId().equals(seriesID)) {
-		    if (sortType.equalsIgnoreCase("default")) {
-			if (ep.getSeasonNumber() == seasonNum && ep.getEpisodeNumber() == episodeNum) {
-			    return ep.getEpisodeName();
-			}
-			continue;
-		    }
-		    if (sortType.equalsIgnoreCase("dvd")) {
-			String dvdSeason = ep.getDvdSeason();
-			String dvdEpisode = ep.getDvdEpisodeNumber();
-			int dvdSeasonNum = -1;
-			int dvdEpisodeNum = -1;
-			if (!dvdSeason.isEmpty()) {
-			    if (dvdSeason.matches("[0-9]*")) {
-				dvdSeasonNum = Integer.valueOf(dvdSeason).intValue();
-			    } else {
-				dvdSeasonNum = Double.valueOf(dvdSeason).intValue();
-			    }
-			}
-			if (!dvdEpisode.isEmpty()) {
-			    if (dvdEpisode.matches("[0-9]*")) {
-				dvdEpisodeNum = Integer.valueOf(dvdEpisode).intValue();
-			    } else {
-				dvdEpisodeNum = Double.valueOf(dvdEpisode).intValue();
-			    }
-			}
-			if (!dvdSeason.isEmpty() && !dvdEpisode.isEmpty() && dvdSeasonNum == seasonNum
-				&& dvdEpisodeNum == episodeNum) {
-			    return ep.getEpisodeName();
-			}
-			continue;
-		    }
-		    if (sortType.equalsIgnoreCase("absolute")) {
-			log("Renaming according to absolute numbering scheme is not yet supported", true);
-		    }
-		    continue;
-		}
-		log("The episode list does not contain episodes for " + show + ", but for the show with ID: "
-			+ ep.getSeriesId(), true);
-		return "";
-	    }
-	    log("The episode " + show + " - " + season + "x" + episode + " is not contained in the episode list", true);
-	    return "";
+	if (title != null) {
+	    Episode offlineEpisode = new Episode();
+	    offlineEpisode.setEpisodeName(title);
+	    return offlineEpisode;
 	}
-	log("The episode list for " + show + " - " + season + "x" + episode + " was not retrieved", true);
-	return "";
+	log("The episode " + show + " - " + season + "x" + episode + " is not in the offline index", true);
+	return null;
     }
 
-    private static List<Episode> getEpisodes(String show, String season) {
-	TheTVDB tvdb = new TheTVDB(APIKEY);
-	if (!seriesID.isEmpty()) {
-	    List<Episode> epDetails = null;
-	    if (season.isEmpty()) {
-		epDetails = tvdb.getAllEpisodes(seriesID, "en");
-	    } else {
-		epDetails = tvdb.getSeasonEpisodes(seriesID, Integer.valueOf(season).intValue(), "en");
-	    }
-	    if (epDetails != null) {
-		return epDetails;
-	    }
-	    log("Episode list for " + show + " and " + season + " could not be retrieved", true);
+    /**
+     * Get the index with all episodes of the series, once enough files of the series have been found to make
+     * retrieving them all at once worthwhile. The episodes of each series are only retrieved once per run.
+     * 
+     * @return the index, or null if the episodes should be retrieved one by one
+     */
+    private static EpisodeIndex getEpisodeIndex(final String show, final String seriesID) {
+	if (seriesID.isEmpty()) {
 	    return null;
 	}
-	return null;
+	AtomicInteger fileCount = seriesFileCounts.get(seriesID);
+	if (fileCount == null) {
+	    seriesFileCounts.putIfAbsent(seriesID, new AtomicInteger());
+	    fileCount = seriesFileCounts.get(seriesID);
+	}
+	int files = fileCount.incrementAndGet();
+	boolean batch = fullSeries || fullSeason || (batchThreshold >= 0 && files > batchThreshold);
+	if (offline || (!batch && !episodeIndexes.containsKey(seriesID))) {
+	    return null;
+	}
+	return getOnce(episodeIndexes, seriesID, new Callable<EpisodeIndex>() {
+	    public EpisodeIndex call() {
+		TheTVDB tvdb = new TheTVDB(APIKEY);
+		List<Episode> episodes = null;
+		if (zipBundles) {
+		    // The zip file is compressed, so it's a smaller download than the XML
+		    SeriesBundle bundle = tvdb.getSeriesBundle(seriesID, "en");
+		    if (bundle != null) {
+			episodes = bundle.getEpisodes();
+		    }
+		}
+		if (episodes == null) {
+		    episodes = tvdb.getAllEpisodes(seriesID, "en");
+		}
+		if (episodes == null) {
+		    log("Episode list for " + show + " could not be retrieved", true);
+		} else if (offlineIndex != null) {
+		    offlineIndex.addEpisodes(seriesID, episodes);
+		}
+		return new EpisodeIndex(episodes);
+	    }
+	});
     }
 
-    private static boolean checkFileExtension(String name) {
-	String[] nameArr = name.split("\\.");
-	String ext = "";
-	if (nameArr.length > 0) {
-	    ext = nameArr[nameArr.length - 1].toLowerCase();
+    /**
+     * Get the result of a lookup that should only be done once per run. When several jobs ask for the same key at
+     * once, they all wait for the first lookup. A failed lookup is not remembered, so the next file can try again.
+     */
+    private static <T> T getOnce(ConcurrentHashMap<String, Future<T>> results, String key, Callable<T> lookup) {
+	Future<T> result = results.get(key);
+	if (result == null) {
+	    FutureTask<T> task = new FutureTask<T>(lookup);
+	    result = results.putIfAbsent(key, task);
+	    if (result == null) {
+		result = task;
+		task.run();
+	    }
 	}
-	String[] validExts = props.getProperty("validExtensions").split(";");
-	boolean validExt = false;
-	for (int i = 0; i < validExts.length && !validExt; i++) {
-	    validExts[i] = validExts[i].trim();
-	    validExt = ext.matches(validExts[i]);
+	try {
+	    return result.get();
+	} catch (ExecutionException error) {
+	    results.remove(key, result);
+	    throw new RuntimeException("The lookup for " + key + " failed", error.getCause());
+	} catch (InterruptedException interrupted) {
+	    Thread.currentThread().interrupt();
+	    throw new RuntimeException("The lookup for " + key + " was interrupted", interrupted);
 	}
-	return validExt;
     }
 
     private static boolean isSameSeries(String seriesName, String otherSeriesName) {
@@ -638,44 +1022,11 @@ public class SeriesRenamer {
 
     private static String handleAliases(String filename, boolean pre) {
 	String changedFilename = filename;
-	String aliases = "";
-	if (pre) {
-	    aliases = String.valueOf(configPath) + preExecFile;
-	} else {
-	    aliases = String.valueOf(configPath) + postExecFile;
-	}
 	try {
-	    File aliasFile = new File(aliases);
-	    if (aliasFile.exists()) {
-		BufferedReader reader = new BufferedReader(new FileReader(aliasFile));
-		String curLine = reader.readLine();
-		while (curLine != null) {
-		    if (!curLine.matches("#.*")) {
-			String[] line = curLine.split("=", 2);
-			String regex = line[0];
-			String alias = line[1];
-			changedFilename = changedFilename.replaceFirst("(?i)" + regex, alias);
-		    }
-		    curLine = reader.readLine();
-		}
-		reader.close();
-	    }
-	} catch (FileNotFoundException noFile) {
-	    log("Alias file " + aliases + "can not be read", true);
-	    StackTraceElement[] stacktrace = noFile.getStackTrace();
-	    String stString = String.valueOf(noFile.toString()) + "\n";
-	    for(StackTraceElement ste: stacktrace) {
-		stString = String.valueOf(stString) + "\t" + ste.toString() + "\n";
-	    }
-	    log(stString, true);
+	    changedFilename = getAliases(pre).apply(filename);
 	} catch (Exception other) {
 	    log("An unexpected error has occurred, please see the stacktrace for more info", true);
-	    StackTraceElement[] stacktrace = other.getStackTrace();
-	    String stString = String.valueOf(other.toString()) + "\n";
-	    for(StackTraceElement ste: stacktrace) {
-		stString = String.valueOf(stString) + "\t" + ste.toString() + "\n";
-	    }
-	    log(stString, true);
+	    log(getStackTrace(other), true);
 	}
 	if (changedFilename != null && !changedFilename.isEmpty()) {
 	    return changedFilename;
@@ -683,6 +1034,51 @@ public class SeriesRenamer {
 	return filename;
     }
 
+    /**
+     * Get the aliases from the preExec or postExec alias file. The files are checked for changes at most once every
+     * ALIAS_CHECK_INTERVAL, so the lookup jobs don't wait for each other to get the aliases.
+     */
+    private static AliasTable getAliases(boolean pre) {
+	if (System.currentTimeMillis() - aliasesChecked >= ALIAS_CHECK_INTERVAL) {
+	    checkAliases();
+	}
+	return pre ? preExecAliases : postExecAliases;
+    }
+
+    /**
+     * Read the alias files again if they have been changed
+     */
+    private static synchronized void checkAliases() {
+	if (System.currentTimeMillis() - aliasesChecked < ALIAS_CHECK_INTERVAL) {
+	    // Another job has just checked them
+	    return;
+	}
+	preExecAliases = loadAliases(preExecFile, preExecAliases);
+	postExecAliases = loadAliases(postExecFile, postExecAliases);
+	aliasesChecked = System.currentTimeMillis();
+    }
+
+    private static AliasTable loadAliases(String fileName, AliasTable aliases) {
+	File aliasFile = new File(String.valueOf(configPath) + fileName);
+	if (aliases != null && !aliases.isStale(aliasFile)) {
+	    return aliases;
+	}
+	List<String> invalidLines = new ArrayList<String>();
+	AliasTable loaded;
+	try {
+	    loaded = AliasTable.load(aliasFile, invalidLines);
+	} catch (IOException IO) {
+	    log("Alias file " + aliasFile.getPath() + " can not be read", true);
+	    log(getStackTrace(IO), true);
+	    loaded = AliasTable.EMPTY;
+	}
+	for (String invalidLine : invalidLines) {
+	    log("The alias \"" + invalidLine + "\" in " + aliasFile.getPath()
+		    + " is not a valid regex=alias pair and will be ignored", true);
+	}
+	return loaded;
+    }
+
     private static void log(String message, boolean error) {
 	if (error) {
 	    if (!quiet) {
@@ -695,40 +1091,25 @@ public class SeriesRenamer {
 	    }
 	    message = "INFO:\n" + message;
 	}
-	BufferedWriter logWriter = null;
-	try {
-	    File log = new File(String.valueOf(configPath) + logFile);
-	    if (!log.exists()) {
-		File logDir = log.getParentFile();
-		if (!logDir.exists()) {
-		    if (!logDir.mkdirs()) {
-			System.err
-				.println("ERROR:\nThe directory for the log file " + logFile + " could not be created");
-		    }
-		}
-		log.createNewFile();
-	    }
-	    logWriter = new BufferedWriter(new FileWriter(log, true));
-	} catch (IOException IO) {
-	    System.err.println("ERROR:\nThe log file " + logFile + " could not be created");
-	    IO.printStackTrace();
-	} catch (Exception other) {
-	    System.err.println("ERROR:\nAn unexpected error has occurred, please see the stacktrace for more info");
-	    other.printStackTrace();
-	}
-	try {
-	    logWriter.newLine();
-	    logWriter.write(message);
-	} catch (IOException logWriteIO) {
-	    System.err.println("ERROR:\nThe log message could not be written to the log " + logFile);
-	    logWriteIO.printStackTrace();
+	getLog().write(message);
+    }
+
+    /**
+     * The log file is written on a background thread, which is started with the first message
+     */
+    private static synchronized AsyncLog getLog() {
+	if (asyncLog == null) {
+	    asyncLog = new AsyncLog(new File(String.valueOf(configPath) + logFile), LOG_MAX_SIZE, LOG_BACKUPS);
 	}
-	try {
-	    logWriter.close();
-	} catch (IOException e) {
-	    System.err.println("ERROR:\nThe writer for the log file " + logFile + " could not be closed");
-	    e.printStackTrace();
+	return asyncLog;
+    }
+
+    private static String getStackTrace(Throwable error) {
+	StringBuilder stString = new StringBuilder(error.toString()).append('\n');
+	for (StackTraceElement ste : error.getStackTrace()) {
+	    stString.append('\t').append(ste.toString()).append('\n');
 	}
+	return stString.toString();
     }
 
     public static void reset() {
@@ -737,11 +1118,34 @@ public class SeriesRenamer {
 	quiet = false;
 	verbose = false;
 	recursive = false;
+	maxDepth = Integer.MAX_VALUE;
+	excludes = new ArrayList<String>();
 	format = "<SeriesName> - <SeasonNumber>x<EpisodeNumber>[-<MultipartEpNum>][ - <EpisodeTitle>][-<MultipartEpTitle>]";
-	batchEpisodes = null;
+	batchThreshold = 5;
+	zipBundles = true;
 	sortType = "default";
-	state = -1;
 	fullSeries = false;
 	fullSeason = false;
+	useCache = true;
+	sync = false;
+	offline = false;
+	offlineIndex = null;
+	grammar = null;
+	template = null;
+	sanitizer = null;
+	preExecAliases = null;
+	postExecAliases = null;
+	aliasesChecked = 0L;
+	if (asyncLog != null) {
+	    asyncLog.close();
+	    asyncLog = null;
+	}
+	jobs = 1;
+	simulate = false;
+	watch = false;
+	undoJournal = "";
+	resolvedSeries.clear();
+	seriesFileCounts.clear();
+	episodeIndexes.clear();
     }
 }
@@ -0,0 +1,187 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list
+ *
+ *      Web: http://code.google.com/p/moviejukebox/
+ *
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *
+ *      For any reuse or distribution, you must make clear to others the
+ *      license terms of this work.
+ */
+package com.moviejukebox.thetvdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TheTVDBTest {
+    private static final String URL = "http://www.thetvdb.com/api/TEST/series/100/all/en.xml";
+    private static final int THREADS = 8;
+
+    @BeforeClass
+    public static void setUpApiKey() {
+        new TheTVDB("TEST");
+    }
+
+    @Test
+    public void concurrentFetchesAreShared() throws Exception {
+        final BlockingFetch fetch = new BlockingFetch(null);
+        final List<Object> results = new ArrayList<Object>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    Object result = TheTVDB.fetchOnce("test", URL, fetch);
+                    synchronized (results) {
+                        results.add(result);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+            if (i == 0) {
+                fetch.started.await();
+            }
+        }
+        // All the other threads wait for the result of the first one
+        for (Thread thread : threads.subList(1, THREADS)) {
+            awaitWaiting(thread);
+        }
+        fetch.release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000L);
+        }
+
+        assertEquals(1, fetch.calls.get());
+        assertEquals(THREADS, results.size());
+        for (Object result : results) {
+            assertSame(results.get(0), result);
+        }
+    }
+
+    @Test
+    public void finishedFetchIsNotShared() {
+        CountingFetch fetch = new CountingFetch();
+        TheTVDB.fetchOnce("test", URL, fetch);
+        TheTVDB.fetchOnce("test", URL, fetch);
+        assertEquals(2, fetch.calls.get());
+    }
+
+    @Test
+    public void otherKindIsNotShared() throws Exception {
+        final BlockingFetch fetch = new BlockingFetch(null);
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                TheTVDB.fetchOnce("test", URL, fetch);
+            }
+        });
+        thread.start();
+        fetch.started.await();
+
+        // Parsed another way, so it doesn't wait for the running fetch
+        CountingFetch other = new CountingFetch();
+        TheTVDB.fetchOnce("other", URL, other);
+        assertEquals(1, other.calls.get());
+
+        fetch.release.countDown();
+        thread.join(5000L);
+    }
+
+    @Test
+    public void failureIsPassedToAllCallers() throws Exception {
+        final RuntimeException failure = new RuntimeException("The fetch failed");
+        final BlockingFetch fetch = new BlockingFetch(failure);
+        final List<Object> errors = new ArrayList<Object>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        TheTVDB.fetchOnce("test", URL, fetch);
+                    } catch (RuntimeException error) {
+                        synchronized (errors) {
+                            errors.add(error);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+            if (i == 0) {
+                fetch.started.await();
+            }
+        }
+        for (Thread thread : threads.subList(1, THREADS)) {
+            awaitWaiting(thread);
+        }
+        fetch.release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000L);
+        }
+
+        assertEquals(1, fetch.calls.get());
+        assertEquals(THREADS, errors.size());
+        for (Object error : errors) {
+            assertSame(failure, error);
+        }
+
+        // The failure isn't kept, the next call fetches again
+        CountingFetch retry = new CountingFetch();
+        TheTVDB.fetchOnce("test", URL, retry);
+        assertEquals(1, retry.calls.get());
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000L;
+        while (thread.getState() != Thread.State.WAITING) {
+            if (System.currentTimeMillis() > end) {
+                fail(thread.getName() + " isn't waiting for the fetch");
+            }
+            Thread.sleep(10L);
+        }
+    }
+
+    private static class CountingFetch implements Callable<Object> {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        public Object call() {
+            calls.incrementAndGet();
+            return new Object();
+        }
+    }
+
+    /**
+     * A fetch that doesn't finish until it's released, it fails with the error if there is one
+     */
+    private static class BlockingFetch implements Callable<Object> {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final RuntimeException error;
+
+        private BlockingFetch(RuntimeException error) {
+            this.error = error;
+        }
+
+        public Object call() throws InterruptedException {
+            calls.incrementAndGet();
+            started.countDown();
+            release.await();
+            if (error != null) {
+                throw error;
+            }
+            return new Object();
+        }
+    }
+}
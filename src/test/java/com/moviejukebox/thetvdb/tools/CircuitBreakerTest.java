@@ -0,0 +1,145 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list
+ *
+ *      Web: http://code.google.com/p/moviejukebox/
+ *
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *
+ *      For any reuse or distribution, you must make clear to others the
+ *      license terms of this work.
+ */
+package com.moviejukebox.thetvdb.tools;
+
+import static org.junit.Assert.fail;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.moviejukebox.thetvdb.TheTVDB;
+
+public class CircuitBreakerTest {
+    private static final String HOST = "www.thetvdb.com";
+
+    @BeforeClass
+    public static void setUpLogger() {
+        // The logger is set up by the first instance of TheTVDB
+        new TheTVDB("TEST");
+    }
+
+    @Test
+    public void opensAfterFailuresInARow() throws HostUnavailableException {
+        TestBreaker breaker = new TestBreaker(3, 60000L, 60000L);
+        breaker.recordFailure(HOST);
+        breaker.recordFailure(HOST);
+        breaker.check(HOST);
+        breaker.recordFailure(HOST);
+        assertOpen(breaker, HOST);
+    }
+
+    @Test
+    public void successResetsFailures() throws HostUnavailableException {
+        TestBreaker breaker = new TestBreaker(3, 60000L, 60000L);
+        breaker.recordFailure(HOST);
+        breaker.recordFailure(HOST);
+        breaker.recordSuccess(HOST);
+        breaker.recordFailure(HOST);
+        breaker.recordFailure(HOST);
+        breaker.check(HOST);
+    }
+
+    @Test
+    public void otherHostsAreNotStopped() throws HostUnavailableException {
+        TestBreaker breaker = new TestBreaker(1, 60000L, 60000L);
+        breaker.recordFailure(HOST);
+        assertOpen(breaker, HOST);
+        breaker.check("other.thetvdb.com");
+    }
+
+    @Test
+    public void singleTrialAfterOpenTime() throws HostUnavailableException {
+        TestBreaker breaker = new TestBreaker(1, 200L, 60000L);
+        breaker.recordFailure(HOST);
+        assertOpen(breaker, HOST);
+
+        breaker.advance(300L);
+        breaker.check(HOST);
+        // Only one request is let through until the trial reports back
+        assertOpen(breaker, HOST);
+
+        breaker.recordSuccess(HOST);
+        breaker.check(HOST);
+        breaker.check(HOST);
+    }
+
+    @Test
+    public void failedTrialDoublesOpenTime() throws HostUnavailableException {
+        TestBreaker breaker = new TestBreaker(1, 200L, 60000L);
+        breaker.recordFailure(HOST);
+        breaker.advance(300L);
+        breaker.check(HOST);
+        breaker.recordFailure(HOST);
+
+        // Open for 400 ms now
+        breaker.advance(300L);
+        assertOpen(breaker, HOST);
+        breaker.advance(300L);
+        breaker.check(HOST);
+    }
+
+    @Test
+    public void openTimeIsLimited() throws HostUnavailableException {
+        TestBreaker breaker = new TestBreaker(1, 200L, 250L);
+        breaker.recordFailure(HOST);
+        breaker.advance(300L);
+        breaker.check(HOST);
+        breaker.recordFailure(HOST);
+
+        // Open for 250 ms instead of 400 ms
+        breaker.advance(350L);
+        breaker.check(HOST);
+    }
+
+    @Test
+    public void lostTrialIsGivenUp() throws HostUnavailableException {
+        TestBreaker breaker = new TestBreaker(1, 200L, 60000L);
+        breaker.recordFailure(HOST);
+        breaker.advance(300L);
+        breaker.check(HOST);
+        assertOpen(breaker, HOST);
+
+        // The trial never reports back, so another one is let through after the open time
+        breaker.advance(300L);
+        breaker.check(HOST);
+    }
+
+    /**
+     * A circuit breaker with a clock that only moves when the test advances it
+     */
+    private static class TestBreaker extends CircuitBreaker {
+        private long now = 1000000L;
+
+        TestBreaker(int maxFailures, long openTime, long maxOpenTime) {
+            super(maxFailures, openTime, maxOpenTime);
+        }
+
+        @Override
+        long now() {
+            return now;
+        }
+
+        void advance(long milliseconds) {
+            now += milliseconds;
+        }
+    }
+
+    private static void assertOpen(CircuitBreaker breaker, String host) {
+        try {
+            breaker.check(host);
+            fail("The requests to " + host + " should be stopped");
+        } catch (HostUnavailableException expected) {
+            // The circuit is open
+        }
+    }
+}
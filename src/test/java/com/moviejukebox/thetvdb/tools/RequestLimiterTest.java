@@ -0,0 +1,207 @@
+/*
+ *      Copyright (c) 2004-2011 YAMJ Members
+ *      http://code.google.com/p/moviejukebox/people/list
+ *
+ *      Web: http://code.google.com/p/moviejukebox/
+ *
+ *      This software is licensed under a Creative Commons License
+ *      See this page: http://code.google.com/p/moviejukebox/wiki/License
+ *
+ *      For any reuse or distribution, you must make clear to others the
+ *      license terms of this work.
+ */
+package com.moviejukebox.thetvdb.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class RequestLimiterTest {
+    private static final String HOST = "www.thetvdb.com";
+
+    @Test
+    public void noLimit() throws InterruptedIOException {
+        TestLimiter limiter = new TestLimiter(0, 1, true);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(HOST, false);
+        }
+        assertEquals("[]", limiter.waits.toString());
+        assertEquals("[RequestLimiter [" + HOST + "=[requests=100][bulk=0][delayed=0][waited=0ms]]]", limiter.toString());
+    }
+
+    @Test
+    public void burstThenRate() throws InterruptedIOException {
+        TestLimiter limiter = new TestLimiter(20, 2, true);
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire(HOST, false);
+        }
+        // The burst goes at once, the other 4 requests wait 50 ms each
+        assertEquals("[50, 50, 50, 50]", limiter.waits.toString());
+        assertTrue(limiter.toString(), limiter.toString().contains("[requests=6][bulk=0][delayed=4][waited=200ms]"));
+    }
+
+    @Test
+    public void hostsAreLimitedSeparately() throws InterruptedIOException {
+        TestLimiter limiter = new TestLimiter(0.1, 1, true);
+        limiter.acquire("a.thetvdb.com", false);
+        limiter.acquire("b.thetvdb.com", false);
+        assertEquals("[]", limiter.waits.toString());
+    }
+
+    @Test
+    public void limitOfSingleHost() throws InterruptedIOException {
+        TestLimiter limiter = new TestLimiter(0, 1, true);
+        limiter.setLimit("slow.thetvdb.com", 10, 1);
+        // A new limit for all hosts doesn't replace the limit of the single host
+        limiter.setLimit(0, 1);
+
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire(HOST, false);
+        }
+        assertEquals("[]", limiter.waits.toString());
+
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire("slow.thetvdb.com", false);
+        }
+        assertEquals("[100, 100, 100]", limiter.waits.toString());
+    }
+
+    @Test
+    public void singleRequestGoesBeforeBulk() throws Exception {
+        final TestLimiter limiter = new TestLimiter(5, 1, false);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        limiter.acquire(HOST, false);
+
+        Thread bulk = new Thread(new Runnable() {
+            public void run() {
+                acquire(limiter, true, order, "bulk");
+            }
+        }, "bulk");
+        Thread single = new Thread(new Runnable() {
+            public void run() {
+                acquire(limiter, false, order, "single");
+            }
+        }, "single");
+        bulk.start();
+        // The bulk request is waiting for the next token when the single request arrives
+        limiter.waitFor("bulk");
+        single.start();
+        limiter.waitFor("single");
+
+        limiter.advance(200L);
+        single.join(5000L);
+        limiter.advance(200L);
+        bulk.join(5000L);
+
+        assertEquals("[single, bulk]", order.toString());
+        assertTrue(limiter.toString(), limiter.toString().contains("[requests=3][bulk=1][delayed=2]"));
+    }
+
+    @Test
+    public void newLimitWakesWaitingRequests() throws Exception {
+        final TestLimiter limiter = new TestLimiter(0.1, 1, false);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        limiter.acquire(HOST, false);
+
+        Thread waiting = new Thread(new Runnable() {
+            public void run() {
+                acquire(limiter, false, order, "waiting");
+            }
+        }, "waiting");
+        waiting.start();
+        limiter.waitFor("waiting");
+        limiter.setLimit(0, 1);
+        waiting.join(5000L);
+
+        assertEquals("[waiting]", order.toString());
+    }
+
+    @Test
+    public void interruptedWhileWaiting() throws Exception {
+        final TestLimiter limiter = new TestLimiter(0.1, 1, false);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        limiter.acquire(HOST, false);
+
+        Thread waiting = new Thread(new Runnable() {
+            public void run() {
+                acquire(limiter, false, order, "waiting");
+            }
+        }, "waiting");
+        waiting.start();
+        limiter.waitFor("waiting");
+        waiting.interrupt();
+        waiting.join(5000L);
+
+        assertEquals("[waiting interrupted]", order.toString());
+    }
+
+    private static void acquire(RequestLimiter limiter, boolean bulk, List<String> order, String name) {
+        try {
+            limiter.acquire(HOST, bulk);
+            order.add(name);
+        } catch (InterruptedIOException interrupted) {
+            order.add(name + " interrupted");
+        }
+    }
+
+    /**
+     * A request limiter with a clock that only moves when the test advances it, or by the time a request
+     * waits when the waits are skipped
+     */
+    private static class TestLimiter extends RequestLimiter {
+        private final boolean skipWaits;
+        private volatile long now = 1000000L;
+        private final List<Long> waits = Collections.synchronizedList(new ArrayList<Long>());
+        private final Set<String> waitingThreads = new HashSet<String>();
+
+        TestLimiter(double requestsPerSecond, int burst, boolean skipWaits) {
+            super(requestsPerSecond, burst);
+            this.skipWaits = skipWaits;
+        }
+
+        @Override
+        long now() {
+            return now;
+        }
+
+        @Override
+        void await(Object bucket, long milliseconds) throws InterruptedException {
+            if (skipWaits) {
+                waits.add(milliseconds);
+                now += milliseconds;
+                return;
+            }
+            synchronized (waitingThreads) {
+                waitingThreads.add(Thread.currentThread().getName());
+                waitingThreads.notifyAll();
+            }
+            // The clock is moved by the test, so look at it again soon
+            bucket.wait(1L);
+        }
+
+        void advance(long milliseconds) {
+            now += milliseconds;
+        }
+
+        /**
+         * Wait until the thread is waiting for a token
+         * @param name
+         * @throws InterruptedException
+         */
+        void waitFor(String name) throws InterruptedException {
+            synchronized (waitingThreads) {
+                while (!waitingThreads.contains(name)) {
+                    waitingThreads.wait();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package seriesRenamer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenamePlanTest {
+    private File dir;
+    private RenameJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+	dir = Files.createTempDirectory("RenamePlanTest").toFile();
+	journal = new RenameJournal(new File(dir, "rename.journal"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+	journal.close();
+	delete(dir);
+    }
+
+    @Test
+    public void renameToNewName() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = new File(dir, "b.avi");
+	RenamePlan plan = new RenamePlan();
+	assertTrue(plan.add(a, b));
+	assertTrue(plan.removeCollisions().isEmpty());
+
+	plan.execute(journal);
+
+	assertNull(plan.getFailure(a));
+	assertFalse(a.exists());
+	assertEquals("A", read(b));
+    }
+
+    @Test
+    public void sameNewNameIsOnlyAddedOnce() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = createFile("b.avi", "B");
+	File c = new File(dir, "c.avi");
+	RenamePlan plan = new RenamePlan();
+	assertTrue(plan.add(a, c));
+	assertFalse(plan.add(b, c));
+	assertEquals(1, plan.getRenames().size());
+    }
+
+    @Test
+    public void swap() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = createFile("b.avi", "B");
+	RenamePlan plan = new RenamePlan();
+	plan.add(a, b);
+	plan.add(b, a);
+	assertTrue(plan.removeCollisions().isEmpty());
+
+	plan.execute(journal);
+
+	assertNull(plan.getFailure(a));
+	assertNull(plan.getFailure(b));
+	assertEquals("B", read(a));
+	assertEquals("A", read(b));
+	assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void threeCycle() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = createFile("b.avi", "B");
+	File c = createFile("c.avi", "C");
+	RenamePlan plan = new RenamePlan();
+	plan.add(a, b);
+	plan.add(b, c);
+	plan.add(c, a);
+	assertTrue(plan.removeCollisions().isEmpty());
+
+	plan.execute(journal);
+
+	assertNull(plan.getFailure(a));
+	assertNull(plan.getFailure(b));
+	assertNull(plan.getFailure(c));
+	assertEquals("C", read(a));
+	assertEquals("A", read(b));
+	assertEquals("B", read(c));
+	assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void chainIsRenamedFromTheEnd() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = createFile("b.avi", "B");
+	File c = new File(dir, "c.avi");
+	RenamePlan plan = new RenamePlan();
+	plan.add(a, b);
+	plan.add(b, c);
+	assertTrue(plan.removeCollisions().isEmpty());
+
+	plan.execute(journal);
+
+	assertFalse(a.exists());
+	assertEquals("A", read(b));
+	assertEquals("B", read(c));
+	assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void collisionWithFileOutsidePlan() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = createFile("b.avi", "B");
+	File other = createFile("other.avi", "other");
+	RenamePlan plan = new RenamePlan();
+	plan.add(a, other);
+	// Depends on a being renamed, which it isn't anymore
+	plan.add(b, a);
+
+	Map<File, File> collisions = plan.removeCollisions();
+
+	assertEquals(2, collisions.size());
+	assertEquals(other, collisions.get(a));
+	assertEquals(a, collisions.get(b));
+	assertTrue(plan.getRenames().isEmpty());
+
+	plan.execute(journal);
+
+	assertEquals("A", read(a));
+	assertEquals("B", read(b));
+	assertEquals("other", read(other));
+	assertFalse(journal.isWritten());
+    }
+
+    @Test
+    public void failedMoveInChain() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = createFile("b.avi", "B");
+	File c = createFile("c.avi", "C");
+	// The last move of the chain fails because the directory doesn't exist
+	File d = new File(new File(dir, "missing"), "d.avi");
+	RenamePlan plan = new RenamePlan();
+	plan.add(a, b);
+	plan.add(b, c);
+	plan.add(c, d);
+	assertTrue(plan.removeCollisions().isEmpty());
+
+	plan.execute(journal);
+
+	assertNotNull(plan.getFailure(c));
+	assertTrue(plan.getFailure(b).contains("could not be moved out of the way"));
+	assertTrue(plan.getFailure(a).contains("could not be moved out of the way"));
+	assertEquals("A", read(a));
+	assertEquals("B", read(b));
+	assertEquals("C", read(c));
+	assertFalse(journal.isWritten());
+    }
+
+    @Test
+    public void failedMoveInCycle() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = createFile("b.avi", "B");
+	createFile("a.avi.seriesRenamer.tmp", "in the way");
+	RenamePlan plan = new RenamePlan();
+	plan.add(a, b);
+	plan.add(b, a);
+
+	plan.execute(journal);
+
+	assertTrue(plan.getFailure(a).contains("already exists"));
+	assertNotNull(plan.getFailure(b));
+	assertEquals("A", read(a));
+	assertEquals("B", read(b));
+	assertFalse(journal.isWritten());
+    }
+
+    @Test
+    public void undoRoundTrip() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = createFile("b.avi", "B");
+	File c = createFile("c.avi", "C");
+	File d = new File(dir, "d.avi");
+	RenamePlan plan = new RenamePlan();
+	plan.add(a, b);
+	plan.add(b, a);
+	plan.add(c, d);
+	plan.execute(journal);
+	journal.close();
+
+	List<File[]> renames = RenameJournal.read(journal.getFile());
+	// The swap takes three moves, through the temporary name
+	assertEquals(4, renames.size());
+
+	RenameJournal undoJournal = new RenameJournal(new File(dir, "undo.journal"));
+	List<String> failed = RenamePlan.undo(renames, undoJournal);
+	undoJournal.close();
+
+	assertTrue(failed.toString(), failed.isEmpty());
+	assertEquals("A", read(a));
+	assertEquals("B", read(b));
+	assertEquals("C", read(c));
+	assertFalse(d.exists());
+	assertNoTemporaryFiles();
+	assertEquals(4, RenameJournal.read(undoJournal.getFile()).size());
+    }
+
+    @Test
+    public void undoLeavesChangedFiles() throws IOException {
+	File a = createFile("a.avi", "A");
+	File b = new File(dir, "b.avi");
+	File c = createFile("c.avi", "C");
+	File d = new File(dir, "d.avi");
+	RenamePlan plan = new RenamePlan();
+	plan.add(a, b);
+	plan.add(c, d);
+	plan.execute(journal);
+	journal.close();
+	// A new file with the old name is kept
+	createFile("c.avi", "new C");
+
+	RenameJournal undoJournal = new RenameJournal(new File(dir, "undo.journal"));
+	List<String> failed = RenamePlan.undo(RenameJournal.read(journal.getFile()), undoJournal);
+	undoJournal.close();
+
+	assertEquals(1, failed.size());
+	assertTrue(failed.get(0).contains("already exists"));
+	assertEquals("A", read(a));
+	assertEquals("new C", read(c));
+	assertEquals("C", read(d));
+    }
+
+    private File createFile(String name, String content) throws IOException {
+	File file = new File(dir, name);
+	OutputStream out = new FileOutputStream(file);
+	try {
+	    out.write(content.getBytes("UTF-8"));
+	} finally {
+	    out.close();
+	}
+	return file;
+    }
+
+    private static String read(File file) throws IOException {
+	InputStream in = new FileInputStream(file);
+	try {
+	    byte[] content = new byte[(int) file.length()];
+	    int count = 0;
+	    while (count < content.length) {
+		count += in.read(content, count, content.length - count);
+	    }
+	    return new String(content, "UTF-8");
+	} finally {
+	    in.close();
+	}
+    }
+
+    private void assertNoTemporaryFiles() {
+	for (File file : dir.listFiles()) {
+	    assertFalse(file.getName(), file.getName().endsWith(".seriesRenamer.tmp"));
+	}
+    }
+
+    private static void delete(File file) {
+	File[] files = file.listFiles();
+	if (files != null) {
+	    for (File child : files) {
+		delete(child);
+	    }
+	}
+	file.delete();
+    }
+}